@@ -0,0 +1,563 @@
+/*
+ * Sudoku Solver
+ * Author:    Jamie Speed
+ * Date:      2016-09-13
+ * Description:
+ * I wanted to teach myself Java, so I built this.
+ * This is a Sudoku Solving tool. The user can input a Sudoku puzzle and apply various solutions to it to see the results.
+ * It also supports solving the whole puzzle, using logical solutions or brute force recursion.
+ */
+package sudokusolver;
+
+/**
+ *
+ * @author Jamie Speed
+ */
+
+
+
+/***********************************************************************
+* class SudokuBitboard
+*
+* Brute force solver for 9x9 puzzles, built for solving large numbers of puzzles quickly
+* The grid is split into 3 bands of 3 rows. The state is, per value and band, the 27 cells of the band that can still be
+* that value (bit = row in band * 9 + column), plus per band the cells with no value yet
+* A cell with a value keeps only that value's bit, so a valid row/column/3x3 always has every value
+* Each search level is a frame of these ints, copied from the level above before a guess
+* Frames are preallocated, one per level, so solving a puzzle allocates nothing
+* Each frame is propagated with bitwise operations and table lookups until nothing changes:
+*	In a band, a value is once in each row and once in each 3x3 - the rows and 3x3s it can be in are matched up,
+*	and a row/3x3 pair no match uses is removed (Remove by Row In 3x3 and by 3x3 In Row, and Single In Row/3x3)
+*	In a stack of 3 columns, the same for the bands and columns (Remove by Column In 3x3 and by 3x3 In Column)
+*	Single In Row/Column - a value with one cell left in a row or column
+*	Single Possibility - cells with one value bit left, only looked for in bands that lost a bit
+* Propagation is incremental: each frame keeps the value/band bitboards as they were last looked at,
+* and only those that have lost a bit since are looked at again
+* then the search branches on a cell with the fewest possibilities
+* Not thread safe, use one instance per thread
+***********************************************************************/
+public class SudokuBitboard
+{
+
+	private static final int CELLS = 81;
+	private static final int VALUES = 9;
+	private static final int BANDS = 3;
+	private static final int BAND = 27;					// Cells per band
+	private static final int ALL_BAND = (1 << BAND) - 1;
+	private static final int ROW = 0x1FF;				// Cells of the first row of a band
+	private static final int ROW_LOWEST = 1 | (1 << 9) | (1 << 18);	// First cell of each row of a band
+	private static final int ALL_BANDS = (1 << BANDS) - 1;
+
+	// Frame layout: bitboards per value and band [value*3 + band], cells with no value per band,
+	// then the bitboards per value and band as they were when last propagated
+	private static final int UNSOLVED = VALUES*BANDS;
+	private static final int DONE = UNSOLVED + BANDS;
+	private static final int FRAME = DONE + VALUES*BANDS;
+
+	// Per 9 bit row of a band, mask of the 3x3s it has cells in
+	private static final int[] ROW_BOXES = new int[1 << 9];
+	// Per 3x3 grid of lines (rows of a band, or bands of a stack) and 3x3s or columns the value can be in (bit = line*3 + other),
+	// the pairs used by a way of having it once in every line and once in every 3x3/column, 0 if there is none
+	private static final int[] PLACEMENTS = new int[1 << 9];
+	// Per 3x3 grid of rows of a band and 3x3s, the cells of the band they cover
+	private static final int[] PAIR_CELLS = new int[1 << 9];
+	// Per 3 bit mask of rows of a band, or of 3x3s of a band, every row/3x3 pair they are in
+	private static final int[] ROW_PAIRS = new int[1 << 3];
+	private static final int[] BOX_PAIRS = new int[1 << 3];
+	// Per 9 bit mask of columns, the cells of a band they cover
+	private static final int[] COLUMN_CELLS = new int[1 << 9];
+	// Per cell of a band, its peers in the band (row and 3x3), and its column
+	private static final int[] BAND_PEERS = new int[BAND];
+	private static final int[] CELL_COLUMN = new int[BAND];
+
+	static
+	{
+		int[][] orders = {{0,1,2}, {0,2,1}, {1,0,2}, {1,2,0}, {2,0,1}, {2,1,0}};
+		int pairs;
+
+		for (int mask = 0; mask < (1 << 9); mask++)
+		{
+			for (int box = 0; box < 3; box++)
+			{
+				if ((mask & (7 << box*3)) != 0)
+					ROW_BOXES[mask] |= 1 << box;
+			}
+			for (int[] order : orders)
+			{
+				pairs = (1 << order[0]) | (1 << (3 + order[1])) | (1 << (6 + order[2]));
+				if ((mask & pairs) == pairs)
+					PLACEMENTS[mask] |= pairs;
+			}
+			for (int pair = 0; pair < 9; pair++)
+			{
+				if ((mask & (1 << pair)) != 0)
+					PAIR_CELLS[mask] |= 7 << ((pair/3)*9 + (pair%3)*3);
+			}
+			COLUMN_CELLS[mask] = mask | (mask << 9) | (mask << 18);
+		}
+		for (int mask = 0; mask < (1 << 3); mask++)
+		{
+			for (int line = 0; line < 3; line++)
+			{
+				if ((mask & (1 << line)) != 0)
+				{
+					ROW_PAIRS[mask] |= 7 << line*3;
+					BOX_PAIRS[mask] |= 0x49 << line;
+				}
+			}
+		}
+		for (int bit = 0; bit < BAND; bit++)
+		{
+			BAND_PEERS[bit] = ((ROW << (bit/9)*9) | COLUMN_CELLS[7 << ((bit%9)/3)*3]) & ~(1 << bit);
+			CELL_COLUMN[bit] = COLUMN_CELLS[1 << (bit%9)];
+		}
+	}
+
+	private final int[][] frames = new int[CELLS+1][FRAME];	// Every level sets at least one value, so at most 81 levels below the top
+	private SudokuBudget budget;							// Of the solve in progress
+	private int changedBands;								// Bands that lost a bit since Single Possibility last looked at them
+
+	// Working arrays for loadValues(): the initial values, and per value the rows, columns and 3x3s it is in
+	private final int[] initial = new int[CELLS];
+	private final int[] valueRows = new int[VALUES];
+	private final int[] valueColumns = new int[VALUES];
+	private final int[] valueBoxes = new int[VALUES];
+
+	/****************************************
+	 * solve()
+	 *
+	 * Solve a 9x9 puzzle. If a solution is found, return true and put the value of every cell in values
+	 * Returns false if there is no solution, the initial values conflict, or the budget is exhausted (a node per search level)
+	 * Can be called with a SudokuGameState (its values and possibilities are used, the state is not changed)
+	 * or with the values of the 81 cells, row by row, 0 for no value
+	 ***************************************/
+	boolean solve(SudokuGameState state, int[] values)
+	{
+		return solve(state, values, new SudokuBudget());
+	}
+	boolean solve(SudokuGameState state, int[] values, SudokuBudget budget)
+	{
+		if (state.getHouses() != SudokuHouses.STANDARD)
+			throw new IllegalArgumentException("Bitboard engine only solves 9x9 grids");
+
+		for (int cell = 0; cell < CELLS; cell++)
+		{
+			initial[cell] = state.getValue(cell);
+		}
+		if (!loadValues(initial))
+			return false;
+		for (int cell = 0; cell < CELLS; cell++)		// Possibilities already removed from the state
+		{
+			if (initial[cell] > 0)
+				continue;
+			for (int value = 0; value < VALUES; value++)
+			{
+				if (!state.getPossibility(cell,value+1))
+					frames[0][value*BANDS + cell/BAND] &= ~(1 << (cell%BAND));
+			}
+		}
+		return search(values, budget);
+	}
+	boolean solve(int[] puzzle, int[] values)
+	{
+		return solve(puzzle, values, new SudokuBudget());
+	}
+	boolean solve(int[] puzzle, int[] values, SudokuBudget budget)
+	{
+		if (!loadValues(puzzle))
+			return false;
+		return search(values, budget);
+	}
+
+	/****************************************
+	 * loadValues()
+	 *
+	 * Set the top frame to the initial values of the 81 cells (0 for no value), with nothing propagated yet
+	 * The rows, columns and 3x3s of each value are collected first, then each bitboard is built at once:
+	 * every cell, less the cells with a value and the rows, columns and 3x3s the value is already in, plus the value's cells
+	 * Returns false if two initial values conflict
+	 ***************************************/
+	private boolean loadValues(int[] puzzle)
+	{
+		int[] f = frames[0];
+		int value;
+		int row;
+		int column;
+		int box;
+		int board;
+
+		for (int i = 0; i < VALUES*BANDS; i++)
+		{
+			f[i] = 0;								// Cells of each value, until the bitboards are built
+			f[DONE + i] = -1;
+		}
+		for (value = 0; value < VALUES; value++)
+		{
+			valueRows[value] = valueColumns[value] = valueBoxes[value] = 0;
+		}
+		for (int band = 0; band < BANDS; band++)
+		{
+			f[UNSOLVED + band] = ALL_BAND;
+		}
+
+		for (int cell = 0; cell < CELLS; cell++)
+		{
+			if (puzzle[cell] == 0)
+				continue;
+			value = puzzle[cell]-1;
+			row = 1 << (cell/9);
+			column = 1 << (cell%9);
+			box = 1 << ((cell/27)*3 + (cell%9)/3);
+			if (((valueRows[value] & row) | (valueColumns[value] & column) | (valueBoxes[value] & box)) != 0)
+				return false;
+			valueRows[value] |= row;
+			valueColumns[value] |= column;
+			valueBoxes[value] |= box;
+			f[value*BANDS + cell/BAND] |= 1 << (cell%BAND);
+			f[UNSOLVED + cell/BAND] &= ~(1 << (cell%BAND));
+		}
+
+		for (value = 0; value < VALUES; value++)
+		{
+			for (int band = 0; band < BANDS; band++)
+			{
+				board = f[UNSOLVED + band] & ~COLUMN_CELLS[valueColumns[value]]
+							& ~PAIR_CELLS[ROW_PAIRS[(valueRows[value] >>> band*3) & 7] | BOX_PAIRS[(valueBoxes[value] >>> band*3) & 7]];
+				f[value*BANDS + band] |= board;
+			}
+		}
+		changedBands = ALL_BANDS;
+		return true;
+	}
+
+	/****************************************
+	 * search()
+	 *
+	 * Propagate the frame at this level, then branch on a cell, trying each of its values in the frame below
+	 * Without a depth, search from the top frame within a budget
+	 ***************************************/
+	private boolean search(int[] values, SudokuBudget budget)
+	{
+		boolean found;
+
+		this.budget = budget;
+		found = search(0, values);
+		budget.flush();
+		return found;
+	}
+	private boolean search(int depth, int[] values)
+	{
+		int[] f = frames[depth];
+		int[] next;
+		int cell;
+		int band;
+		int bit;
+
+		if (!budget.node() || !propagate(f))
+			return false;
+
+		if ((f[UNSOLVED] | f[UNSOLVED+1] | f[UNSOLVED+2]) == 0)	// Every cell has a value, solved
+		{
+			readValues(f, values);
+			return true;
+		}
+
+		next = frames[depth+1];
+		cell = chooseCell(f);
+		band = cell / BAND;
+		bit = cell % BAND;
+		for (int value = 0; value < VALUES; value++)
+		{
+			if ((f[value*BANDS + band] & (1 << bit)) != 0)
+			{
+				System.arraycopy(f, 0, next, 0, FRAME);
+				changedBands = 0;							// The frame is propagated, only the guess needs following up
+				setValue(next, value, band, bit);
+				if (search(depth+1, values))
+					return true;
+			}
+		}
+		return false;
+	}
+
+	/****************************************
+	 * propagate()
+	 *
+	 * Apply the band, stack and single solutions to a frame, until there are none left
+	 * Only the values with a band changed since it was last propagated are looked at (see propagateValue()),
+	 * and Single Possibility only looks at the bands that lost a bit
+	 * Returns false if the frame is invalid - a cell, row, column or 3x3 with no bit left for a value it needs
+	 ***************************************/
+	private boolean propagate(int[] f)
+	{
+		boolean changed = true;
+		int base;
+		int board;
+		int singles;
+		int ones;
+		int twos;
+		int unsolved;
+		int value;
+
+		while (changed)
+		{
+			changed = false;
+			for (value = 0; value < VALUES; value++)
+			{
+				base = value*BANDS;
+				if (f[base] == f[base+DONE] && f[base+1] == f[base+DONE+1] && f[base+2] == f[base+DONE+2])
+					continue;
+				changed = true;
+				if (!propagateValue(f, value))
+					return false;
+			}
+
+			// Single Possibility, in the bands that lost a bit
+			for (int band = 0; band < BANDS; band++)
+			{
+				if ((changedBands & (1 << band)) == 0)
+					continue;
+				changedBands &= ~(1 << band);
+				ones = 0;
+				twos = 0;
+				for (value = 0; value < VALUES; value++)
+				{
+					board = f[value*BANDS + band];
+					twos |= ones & board;
+					ones |= board;
+				}
+				unsolved = f[UNSOLVED+band];
+				if ((unsolved & ~ones) != 0)						// Cell with no possibilities
+					return false;
+				for (singles = unsolved & ~twos; singles != 0; singles &= singles-1)
+				{
+					for (value = 0; value < VALUES && (f[value*BANDS + band] & singles & -singles) == 0; value++)
+					{
+					}
+					if (value == VALUES)								// Removed by a value set in this pass
+						return false;
+					if (!setValue(f, value, band, Integer.numberOfTrailingZeros(singles)))
+						return false;
+					changed = true;
+				}
+			}
+		}
+		return true;
+	}
+
+	/****************************************
+	 * propagateValue()
+	 *
+	 * Apply the stack, band, Single In Row and Single In Column solutions to one value's bitboards
+	 * Returns false if they leave a row, column or 3x3 with no cell for the value
+	 ***************************************/
+	private boolean propagateValue(int[] f, int value)
+	{
+		int base = value*BANDS;
+		int columns0;
+		int columns1;
+		int columns2;
+		int lines;
+		int allowed;
+		int removed;
+		int board;
+		int singles;
+		int row0;
+		int row1;
+		int row2;
+
+		// Stacks: match up the bands and columns of each, and remove the columns no match uses
+		columns0 = columns(f[base]);
+		columns1 = columns(f[base+1]);
+		columns2 = columns(f[base+2]);
+		for (int stack = 0; stack < 9; stack += 3)
+		{
+			lines = ((columns0 >>> stack) & 7) | (((columns1 >>> stack) & 7) << 3) | (((columns2 >>> stack) & 7) << 6);
+			allowed = PLACEMENTS[lines];
+			if (allowed == 0)
+				return false;
+			if ((removed = lines & ~allowed) != 0)
+			{
+				for (int band = 0; band < BANDS; band++)
+				{
+					if (((removed >>> band*3) & 7) != 0)
+					{
+						f[base+band] &= ~COLUMN_CELLS[((removed >>> band*3) & 7) << stack];
+						changedBands |= 1 << band;
+					}
+				}
+			}
+		}
+
+		// Bands that changed: match up the rows and 3x3s of each, and remove the cells no match uses
+		// Then Single In Row, a row of the band with one cell left. Every row has a cell once matched up,
+		// so subtracting 1 from each row at once leaves no bits in a row with one cell
+		for (int band = 0; band < BANDS; band++)
+		{
+			board = f[base+band];
+			if (board == f[base+DONE+band])
+				continue;
+			allowed = PLACEMENTS[ROW_BOXES[board & ROW] | (ROW_BOXES[(board >>> 9) & ROW] << 3) | (ROW_BOXES[board >>> 18] << 6)];
+			if (allowed == 0)
+				return false;
+			if ((board & ~PAIR_CELLS[allowed]) != 0)
+			{
+				board &= PAIR_CELLS[allowed];
+				f[base+band] = board;
+				changedBands |= 1 << band;
+			}
+			f[base+DONE+band] = board;
+
+			row0 = board & (board - ROW_LOWEST);
+			singles = 0;
+			for (int row = 0; row < BAND; row += 9)
+			{
+				if ((row0 & (ROW << row)) == 0)
+					singles |= board & (ROW << row);
+			}
+			if (!setValues(f, value, band, singles & f[UNSOLVED+band]))
+				return false;
+		}
+
+		// Single In Column, a column with cells left in one band, and one cell there
+		columns0 = columns(f[base]);
+		columns1 = columns(f[base+1]);
+		columns2 = columns(f[base+2]);
+		for (int band = 0; band < BANDS; band++)
+		{
+			board = f[base+band];
+			singles = (band == 0 ? columns0 & ~(columns1 | columns2) : band == 1 ? columns1 & ~(columns0 | columns2) : columns2 & ~(columns0 | columns1));
+			if (singles == 0)
+				continue;
+			row0 = board & singles;
+			row1 = (board >>> 9) & singles;
+			row2 = (board >>> 18) & singles;
+			singles &= ~((row0 & row1) | (row0 & row2) | (row1 & row2));
+			if (!setValues(f, value, band, ((row0 & singles) | ((row1 & singles) << 9) | ((row2 & singles) << 18)) & f[UNSOLVED+band]))
+				return false;
+		}
+		return true;
+	}
+
+	/****************************************
+	 * columns()
+	 *
+	 * Get the mask of the columns a band's bitboard has cells in
+	 ***************************************/
+	private static int columns(int board)
+	{
+		return (board | (board >>> 9) | (board >>> 18)) & ROW;
+	}
+
+	/****************************************
+	 * chooseCell()
+	 *
+	 * Choose a cell with no value to branch on - the first with the fewest possibilities
+	 * The possibilities of every cell of a band are counted at once, as 4 bit counters held one bit per bitboard (count0 = bit 0, ...)
+	 ***************************************/
+	private int chooseCell(int[] f)
+	{
+		int best = -1;
+		int bestCount = VALUES+1;
+		int count0;
+		int count1;
+		int count2;
+		int count3;
+		int carry;
+		int match;
+
+		for (int band = 0; band < BANDS; band++)
+		{
+			count0 = count1 = count2 = count3 = 0;
+			for (int value = 0; value < VALUES; value++)		// Add each value's bitboard to the counters
+			{
+				carry = f[value*BANDS + band];
+				count0 ^= carry;
+				carry &= ~count0;
+				count1 ^= carry;
+				carry &= ~count1;
+				count2 ^= carry;
+				carry &= ~count2;
+				count3 |= carry;
+			}
+			for (int count = 2; count < bestCount; count++)		// Cells with no value have at least 2 once propagated
+			{
+				match = f[UNSOLVED+band] & (((count & 1) != 0) ? count0 : ~count0) & (((count & 2) != 0) ? count1 : ~count1)
+							& (((count & 4) != 0) ? count2 : ~count2) & (((count & 8) != 0) ? count3 : ~count3);
+				if (match != 0)
+				{
+					best = band*BAND + Integer.numberOfTrailingZeros(match);
+					bestCount = count;
+				}
+			}
+			if (bestCount == 2)
+				break;
+		}
+		return best;
+	}
+
+	/****************************************
+	 * setValue() / setValues()
+	 *
+	 * Set a cell (band and bit in the band) to a value (0-8) in a frame: clear the cell from every other value,
+	 * and clear the value from every peer. setValues() sets every cell of a band's bitboard
+	 * Returns false if the cell cannot be the value. A cell that already has the value is left as it is
+	 ***************************************/
+	private boolean setValues(int[] f, int value, int band, int cells)
+	{
+		for (; cells != 0; cells &= cells-1)
+		{
+			if (!setValue(f, value, band, Integer.numberOfTrailingZeros(cells)))
+				return false;
+		}
+		return true;
+	}
+	private boolean setValue(int[] f, int value, int band, int bit)
+	{
+		int cell = 1 << bit;
+
+		if ((f[value*BANDS + band] & cell) == 0)
+			return false;
+		if ((f[UNSOLVED+band] & cell) == 0)
+			return true;
+
+		for (int i = band; i < VALUES*BANDS; i += BANDS)
+		{
+			f[i] &= ~cell;
+		}
+		f[value*BANDS + band] |= cell;
+		f[value*BANDS + band] &= ~BAND_PEERS[bit];
+		for (int other = 0; other < BANDS; other++)
+		{
+			if (other != band && (f[value*BANDS + other] & CELL_COLUMN[bit]) != 0)
+			{
+				f[value*BANDS + other] &= ~CELL_COLUMN[bit];
+				changedBands |= 1 << other;
+			}
+		}
+		f[UNSOLVED+band] &= ~cell;
+		changedBands |= 1 << band;
+		return true;
+	}
+
+	/****************************************
+	 * readValues()
+	 *
+	 * Copy the values of a solved frame into values
+	 ***************************************/
+	private void readValues(int[] f, int[] values)
+	{
+		int board;
+
+		for (int value = 0; value < VALUES; value++)
+		{
+			for (int band = 0; band < BANDS; band++)
+			{
+				for (board = f[value*BANDS + band]; board != 0; board &= board-1)
+				{
+					values[band*BAND + Integer.numberOfTrailingZeros(board)] = value+1;
+				}
+			}
+		}
+	}
+}
@@ -0,0 +1,209 @@
+/*
+ * Sudoku Solver
+ * Author:    Jamie Speed
+ * Date:      2016-09-13
+ * Description:
+ * I wanted to teach myself Java, so I built this.
+ * This is a Sudoku Solving tool. The user can input a Sudoku puzzle and apply various solutions to it to see the results.
+ * It also supports solving the whole puzzle, using logical solutions or brute force recursion.
+ */
+package sudokusolver;
+
+/**
+ *
+ * @author Jamie Speed
+ */
+import java.util.concurrent.atomic.*;
+
+
+/***********************************************************************
+* class SudokuBudget
+*
+* Limits on how long a solve may run: a number of search nodes, a wall clock time, and a cancel flag
+* Searches count a node for every guess with node(), which only counts in a local field -
+* every CHECK_NODES nodes it adds them to the total and checks the limits (so a search can pass a limit by that many)
+* Logical solves count a node with node() for each cell or house taken from the queue
+* Once a limit is reached the status says which, and the solver stops and returns as if it had failed
+* The node count and elapsed time are kept as statistics, whether or not the budget was exhausted
+* A budget can have a parent: nodes counted here are counted there too, and this budget stops when the parent does,
+* but cancelling this budget does not cancel the parent (see SudokuParallel - a budget per thread, and per search)
+* node() / flush() must only be called by one thread, cancel() can be called by any thread
+***********************************************************************/
+public class SudokuBudget
+{
+
+	public static final long UNLIMITED = Long.MAX_VALUE;
+	public static final int CHECK_NODES = 64;			// Nodes counted between checks of the limits
+
+	// Status
+	public static final int WITHIN_BUDGET	= 0;
+	public static final int NODES_EXHAUSTED	= 1;
+	public static final int TIME_EXHAUSTED	= 2;
+	public static final int CANCELLED		= 3;
+
+	private final SudokuBudget parent;
+	private final long maxNodes;
+	private final long maxMillis;
+	private final long startTime;					// System.nanoTime()
+	private final long deadline;					// System.nanoTime(), only if maxMillis is not UNLIMITED
+
+	private final AtomicLong nodes = new AtomicLong();
+	private int pending = 0;						// Nodes counted by node() and not yet added to nodes
+	private boolean stopped = false;				// Exhausted at the last check, every node() checks again
+	private volatile int status = WITHIN_BUDGET;
+
+	/****************************************
+	 * SudokuBudget constructor
+	 *
+	 * With no limits, only cancel() stops the solve
+	 * With a number of nodes and a number of milliseconds from now, either UNLIMITED
+	 * With a parent, no limits of its own
+	 ***************************************/
+	SudokuBudget()
+	{
+		this(UNLIMITED, UNLIMITED, null);
+	}
+	SudokuBudget(long maxNodes, long maxMillis)
+	{
+		this(maxNodes, maxMillis, null);
+	}
+	SudokuBudget(SudokuBudget parent)
+	{
+		this(UNLIMITED, UNLIMITED, parent);
+	}
+	private SudokuBudget(long maxNodes, long maxMillis, SudokuBudget parent)
+	{
+		this.parent = parent;
+		this.maxNodes = maxNodes;
+		this.maxMillis = maxMillis;
+		startTime = System.nanoTime();
+		deadline = maxMillis == UNLIMITED ? 0 : startTime + maxMillis * 1000000L;
+	}
+
+	/****************************************
+	 * node()
+	 *
+	 * Count a node. Returns false if the budget is exhausted - only checked every CHECK_NODES nodes,
+	 * then at every node once it is, so a solver unwinding its search stops at each level
+	 ***************************************/
+	boolean node()
+	{
+		if (++pending < CHECK_NODES && !stopped)
+			return true;
+		return flush();
+	}
+
+	/****************************************
+	 * flush()
+	 *
+	 * Add the nodes counted to the total, and check the limits. Returns false if the budget is exhausted
+	 * Solvers call this when they finish, so the node count is exact
+	 ***************************************/
+	boolean flush()
+	{
+		int count = pending;
+
+		pending = 0;
+		add(count);
+		stopped = isExhausted();
+		return !stopped;
+	}
+
+	/****************************************
+	 * add()
+	 *
+	 * Add nodes to the total and to the parent's, updating the status if a limit is reached
+	 ***************************************/
+	private void add(int count)
+	{
+		if (nodes.addAndGet(count) > maxNodes)
+			exhaust(NODES_EXHAUSTED);
+		if (maxMillis != UNLIMITED && System.nanoTime() - deadline > 0)
+			exhaust(TIME_EXHAUSTED);
+		if (parent != null)
+		{
+			parent.add(count);
+			if (parent.status != WITHIN_BUDGET)
+				exhaust(parent.status);
+		}
+	}
+
+	/****************************************
+	 * exhaust()
+	 *
+	 * Set the status, keeping the first reason if there is more than one
+	 ***************************************/
+	private void exhaust(int reason)
+	{
+		if (status == WITHIN_BUDGET)
+			status = reason;
+	}
+
+	/****************************************
+	 * cancel()
+	 *
+	 * Stop the solve, from any thread. Solvers stop within CHECK_NODES nodes
+	 ***************************************/
+	void cancel()
+	{
+		exhaust(CANCELLED);
+	}
+
+	/****************************************
+	 * isExhausted() / getStatus()
+	 *
+	 * Get if a limit was reached or the budget (or its parent) was cancelled, and which
+	 ***************************************/
+	boolean isExhausted()
+	{
+		return getStatus() != WITHIN_BUDGET;
+	}
+	int getStatus()
+	{
+		if (status == WITHIN_BUDGET && parent != null)
+			return parent.getStatus();
+		return status;
+	}
+
+	/****************************************
+	 * getNodes() / getElapsedMillis()
+	 *
+	 * Get the statistics - nodes counted (up to the last check) and milliseconds since the budget was created
+	 ***************************************/
+	long getNodes()
+	{
+		return nodes.get();
+	}
+	long getElapsedMillis()
+	{
+		return (System.nanoTime() - startTime) / 1000000L;
+	}
+
+	/****************************************
+	 * toString()
+	 *
+	 * Describe the status and statistics, for the log
+	 ***************************************/
+	@Override
+	public String toString()
+	{
+		String result;
+
+		switch (getStatus())
+		{
+			case NODES_EXHAUSTED:
+				result = "budget exhausted, node limit of " + maxNodes + " reached";
+				break;
+			case TIME_EXHAUSTED:
+				result = "budget exhausted, time limit of " + maxMillis + "ms reached";
+				break;
+			case CANCELLED:
+				result = "cancelled";
+				break;
+			default:
+				result = "within budget";
+				break;
+		}
+		return result + " (" + getNodes() + " nodes, " + getElapsedMillis() + "ms)";
+	}
+}
@@ -0,0 +1,294 @@
+/*
+ * Sudoku Solver
+ * Author:    Jamie Speed
+ * Date:      2016-09-13
+ * Description:
+ * I wanted to teach myself Java, so I built this.
+ * This is a Sudoku Solving tool. The user can input a Sudoku puzzle and apply various solutions to it to see the results.
+ * It also supports solving the whole puzzle, using logical solutions or brute force recursion.
+ */
+package sudokusolver;
+
+/**
+ *
+ * @author Jamie Speed
+ */
+
+
+/***********************************************************************
+* class SudokuDLX
+*
+* Brute force solver using Knuth's Algorithm X with Dancing Links
+* The puzzle is an exact cover problem:
+*	one row for every cell and value (729 rows for 9x9)
+*	one column for every constraint (324 columns for 9x9):
+*		each cell has a value, each row/column/3x3 has each value
+*	each row covers 4 columns - its cell, and its value in its row, column and 3x3
+* The matrix is built once, as linked int arrays, and reused for every puzzle:
+* the initial values are selected, the search runs, then everything is uncovered again
+***********************************************************************/
+public class SudokuDLX
+{
+
+	private final SudokuHouses houses;
+	private final int columns;
+	private final int rows;
+
+	// Nodes: 0 = root, 1 to columns = column headers, then 4 nodes per matrix row
+	private final int[] left;
+	private final int[] right;
+	private final int[] up;
+	private final int[] down;
+	private final int[] column;			// Column header of each node
+	private final int[] rowOf;			// Matrix row of each node (cell*size + value-1)
+	private final int[] size;			// Number of nodes in each column, indexed by column header
+	private final int[] rowFirst;		// First node of each matrix row
+
+	private final boolean[] columnUsed;	// Columns covered by initial values
+	private final int[] solution;		// Matrix rows selected, initial values first
+	private int solutionCount;
+	private SudokuBudget budget;		// Of the solve in progress
+
+	/****************************************
+	 * SudokuDLX constructor
+	 *
+	 * Build the exact cover matrix for a grid size
+	 ***************************************/
+	SudokuDLX(SudokuHouses houses)
+	{
+		int nodes;
+		int node;
+		int x;
+		int y;
+		int[] rowColumns = new int[4];
+
+		this.houses = houses;
+		columns = houses.cells * 4;
+		rows = houses.cells * houses.size;
+		nodes = 1 + columns + rows * 4;
+
+		left = new int[nodes];
+		right = new int[nodes];
+		up = new int[nodes];
+		down = new int[nodes];
+		column = new int[nodes];
+		rowOf = new int[nodes];
+		size = new int[columns + 1];
+		rowFirst = new int[rows];
+		columnUsed = new boolean[columns + 1];
+		solution = new int[houses.cells];
+
+		// Root and column headers, linked in a circle
+		for (int i = 0; i <= columns; i++)
+		{
+			left[i] = (i == 0) ? columns : i-1;
+			right[i] = (i == columns) ? 0 : i+1;
+			up[i] = i;
+			down[i] = i;
+			column[i] = i;
+		}
+
+		// Matrix rows, each node added to the bottom of its column
+		node = columns + 1;
+		for (int cell = 0; cell < houses.cells; cell++)
+		{
+			x = cell % houses.size;
+			y = cell / houses.size;
+			for (int value = 1; value <= houses.size; value++)
+			{
+				rowColumns[0] = 1 + cell;
+				rowColumns[1] = 1 + houses.cells + y*houses.size + value-1;
+				rowColumns[2] = 1 + houses.cells*2 + x*houses.size + value-1;
+				rowColumns[3] = 1 + houses.cells*3 + (houses.cellHouses[cell][SudokuHouses.BOX] - houses.house3x3)*houses.size + value-1;
+
+				rowFirst[cell*houses.size + value-1] = node;
+				for (int i = 0; i < 4; i++, node++)
+				{
+					column[node] = rowColumns[i];
+					rowOf[node] = cell*houses.size + value-1;
+					up[node] = up[rowColumns[i]];
+					down[node] = rowColumns[i];
+					down[up[rowColumns[i]]] = node;
+					up[rowColumns[i]] = node;
+					size[rowColumns[i]]++;
+					left[node] = (i == 0) ? node+3 : node-1;
+					right[node] = (i == 3) ? node-3 : node+1;
+				}
+			}
+		}
+	}
+
+	/****************************************
+	 * solve()
+	 *
+	 * Solve the state's values, ignoring its possibilities. The state is not changed
+	 * If a solution is found, return true and put the value of every cell in values
+	 * Returns false if there is no solution, the initial values conflict, or the budget is exhausted (a node per search level)
+	 ***************************************/
+	boolean solve(SudokuGameState state, int[] values)
+	{
+		return solve(state, values, new SudokuBudget());
+	}
+	boolean solve(SudokuGameState state, int[] values, SudokuBudget budget)
+	{
+		int given = 0;
+		boolean found = false;
+		boolean valid = true;
+		int node;
+
+		if (state.getHouses() != houses)
+			throw new IllegalArgumentException("State is not a " + houses.size + "x" + houses.size + " grid");
+
+		// Select the row of every cell with a value, unless it conflicts with one already selected
+		for (int cell = 0; cell < houses.cells && valid; cell++)
+		{
+			if (state.getValue(cell) > 0)
+			{
+				node = rowFirst[cell*houses.size + state.getValue(cell)-1];
+				for (int i = 0; i < 4; i++)
+				{
+					if (columnUsed[column[node+i]])
+						valid = false;
+				}
+				if (valid)
+				{
+					for (int i = 0; i < 4; i++)
+					{
+						columnUsed[column[node+i]] = true;
+					}
+					selectRow(node);
+					solution[given++] = node;
+				}
+			}
+		}
+
+		if (valid)
+		{
+			this.budget = budget;
+			found = search(given);
+			budget.flush();
+		}
+
+		// Put the matrix back for the next puzzle
+		for (int i = given-1; i >= 0; i--)
+		{
+			unselectRow(solution[i]);
+			for (int j = 0; j < 4; j++)
+			{
+				columnUsed[column[solution[i]+j]] = false;
+			}
+		}
+
+		if (found)
+		{
+			for (int i = 0; i < solutionCount; i++)
+			{
+				values[rowOf[solution[i]] / houses.size] = rowOf[solution[i]] % houses.size + 1;
+			}
+		}
+		return found;
+	}
+
+	/****************************************
+	 * search()
+	 *
+	 * Algorithm X. Cover the column with the fewest rows, and try each of its rows in turn
+	 * The matrix is left as it was found, whether or not a solution is found
+	 ***************************************/
+	private boolean search(int depth)
+	{
+		int best;
+		boolean found = false;
+
+		if (!budget.node())
+			return false;
+
+		if (right[0] == 0)						// Every column covered, solved
+		{
+			solutionCount = depth;
+			return true;
+		}
+
+		best = right[0];
+		for (int c = right[best]; c != 0; c = right[c])
+		{
+			if (size[c] < size[best])
+				best = c;
+		}
+		if (size[best] == 0)					// Constraint cannot be met, dead end
+			return false;
+
+		cover(best);
+		for (int r = down[best]; r != best && !found; r = down[r])
+		{
+			solution[depth] = r;
+			for (int j = right[r]; j != r; j = right[j])
+			{
+				cover(column[j]);
+			}
+			found = search(depth+1);
+			for (int j = left[r]; j != r; j = left[j])
+			{
+				uncover(column[j]);
+			}
+		}
+		uncover(best);
+		return found;
+	}
+
+	/****************************************
+	 * selectRow() / unselectRow()
+	 *
+	 * Cover every column of a row, or uncover them in reverse order
+	 ***************************************/
+	private void selectRow(int node)
+	{
+		cover(column[node]);
+		for (int j = right[node]; j != node; j = right[j])
+		{
+			cover(column[j]);
+		}
+	}
+	private void unselectRow(int node)
+	{
+		for (int j = left[node]; j != node; j = left[j])
+		{
+			uncover(column[j]);
+		}
+		uncover(column[node]);
+	}
+
+	/****************************************
+	 * cover() / uncover()
+	 *
+	 * Remove a column, and every row that uses it, from the matrix - or put them back
+	 ***************************************/
+	private void cover(int c)
+	{
+		right[left[c]] = right[c];
+		left[right[c]] = left[c];
+		for (int i = down[c]; i != c; i = down[i])
+		{
+			for (int j = right[i]; j != i; j = right[j])
+			{
+				down[up[j]] = down[j];
+				up[down[j]] = up[j];
+				size[column[j]]--;
+			}
+		}
+	}
+	private void uncover(int c)
+	{
+		for (int i = up[c]; i != c; i = up[i])
+		{
+			for (int j = left[i]; j != i; j = left[j])
+			{
+				size[column[j]]++;
+				down[up[j]] = j;
+				up[down[j]] = j;
+			}
+		}
+		right[left[c]] = c;
+		left[right[c]] = c;
+	}
+}
@@ -21,48 +21,146 @@ import java.util.*;
 /***********************************************************************
 * class SudokuGameState
 * 
-* Contains the current state of the Sudoku grid - a 9x9 array of 
-* SudokuCellState objects
+* Contains the current state of the Sudoku grid - 9x9 by default, or any grid size
+* supported by SudokuHouses (e.g. 16x16 or 25x25)
 * Methods for manipulating each cell, which contain:
-*	Array of possibilities for each cell
+*	Possibilities for each cell, held as a bit mask (bit 0 = value 1)
+*	Zobrist hash of the values and possibilities, kept up to date with every change
 *	Value of each cell (if it has a value), with initial value yes/no flag
-*	Value has changed this iteration yes/no
-*	Possibilities have changed this iteration yes/no
-*	Each individual possibility has changed this iteration yes/no
+* Changes (values set, possibilities removed) are logged for this iteration and the previous iteration
+* For every row/column/3x3 and value, keeps a count and a position mask of the cells that can be that value
+* Optionally keeps a trail (undo journal) of every change, so brute force
+* search can undo a failed guess instead of copying the whole state
+* Optionally records logged changes to a SudokuHistory, so whole iterations can be undone and redone
+* Optionally queues the cells and houses changed, so logical solving only looks again where something changed
+* A state loaded cell by cell (see loadCellState()) only holds values and possibilities: the values set, house counts
+* and positions, bivalue cells and hash are worked out again when they are first needed
 
 
 ***********************************************************************/
 public class SudokuGameState
 {
 
+	private final SudokuHouses houses;				// Grid size and lookup tables
+	private final int size;
+	private final int cells;
+
 	private int valuesSet = 0;
+	private long hash;									// Zobrist hash, see SudokuHouses.zobristValue
+	private boolean hashValid = true;					// False once a state is loaded, until getHash() works it out again
+	private boolean derivedValid = true;				// False once a state is loaded, until rebuildDerived() works out the values set, house counts and positions, and bivalue cells
+
+	// Per cell, indexed by cellIndex()
+	private final int[] value;
+	private final int[] possibilities;					// Possibility mask
+	private final boolean[] isInitialValue;
+
+	// Per house and value, indexed [house*size + value-1] (houses as numbered by SudokuHouses)
+	// Kept up to date as possibilities are removed (and undone)
+	private final int[] houseCount;						// Number of cells in the house that can be the value
+	private final int[] housePositions;					// Mask of positions in the house that can be the value (bit 0 = first cell)
 
-	private int[][] value = new int[9][9];
-	private boolean[][][] possibilities = new boolean[9][9][9];
+	// Bivalue cells (exactly 2 possibilities), kept up to date as possibilities are removed (and undone)
+	// bivalueIndex is the position of each cell in bivalueCells, -1 if it is not bivalue
+	private final int[] bivalueCells;
+	private final int[] bivalueIndex;
+	private int bivalueCount;
 
-	private boolean[][] isInitialValue = new boolean[9][9];
+	// Change log entries: (cell << CHANGE_SHIFT) | possibility removed, or CHANGE_VALUE | (cell << CHANGE_SHIFT) | new value
+	// Logged in order for this iteration, cycleIteration() moves them to the previous iteration
+	public static final int CHANGE_VALUE = 1 << 20;
+	private static final int CHANGE_SHIFT = 5;			// Values up to 31
+	private int[] changes;								// Every possibility plus every value can change once per iteration
+	private int changeCount = 0;
+	private int[] prevChanges;
+	private int prevChangeCount = 0;
 
-	private boolean[][] changed = new boolean[9][9];
-	private boolean[][] valueChanged = new boolean[9][9];
-	private boolean[][][] possibilitiesChanged = new boolean[9][9][9];
-	private boolean[][] possibilityChanged = new boolean[9][9];
+	// Trail entries, same layout as change log entries but holding the value replaced
+	private static final int TRAIL_VALUE = CHANGE_VALUE;
+	private boolean trailing = false;
+	private int[] trail;								// Every possibility plus every value can change once between undos
+	private int trailSize = 0;
 
-	private boolean[][] prevChanged = new boolean[9][9];
-	private boolean[][] prevValueChanged = new boolean[9][9];
-	private boolean[][][] prevPossibilitiesChanged = new boolean[9][9][9];
-	private boolean[][] prevPossibilityChanged = new boolean[9][9];
+	// History entries, trail entries with the new value of a value change added at HISTORY_NEW_SHIFT
+	private static final int HISTORY_NEW_SHIFT = 21;
+	private SudokuHistory history = null;
+
+	// Dirty queues, see startDirtyTracking(). Cells and houses with a change since they were last taken from the queue
+	private boolean tracking = false;
+	private boolean[] cellDirty;
+	private boolean[] houseDirty;
+	private int[] dirtyCells;							// Circular queues, each cell/house is queued at most once
+	private int[] dirtyHouses;
+	private int dirtyCellHead;
+	private int dirtyCellCount;
+	private int dirtyHouseHead;
+	private int dirtyHouseCount;
 
 	/****************************************
 	 * SudokuGameState constructor
 	 * 
-	 * build 9x9 array of SudokuSudokuCellState objects
+	 * Build a state for the standard 9x9 grid, or for a grid of
+	 * boxWidth x boxHeight boxes, or for the grid described by houses
 	 * 
 	 ****************************************/
 	SudokuGameState()
 	{
+		this(SudokuHouses.STANDARD);
+	}
+	SudokuGameState(int boxWidth, int boxHeight)
+	{
+		this(SudokuHouses.getHouses(boxWidth, boxHeight));
+	}
+	SudokuGameState(SudokuHouses houses)
+	{
+		this.houses = houses;
+		size = houses.size;
+		cells = houses.cells;
+
+		value = new int[cells];
+		possibilities = new int[cells];
+		isInitialValue = new boolean[cells];
+		houseCount = new int[houses.houses*size];
+		housePositions = new int[houses.houses*size];
+		bivalueCells = new int[cells];
+		bivalueIndex = new int[cells];
+		changes = new int[cells*(size+1)];
+		prevChanges = new int[cells*(size+1)];
+		trail = new int[cells*(size+1)];
+
 		clear();
 	}
 
+	/****************************************
+	 * getHouses()
+	 *
+	 * Get the grid size and lookup tables for this state
+	 ***************************************/
+	SudokuHouses getHouses()
+	{
+		return houses;
+	}
+
+	/****************************************
+	 * getSize()
+	 *
+	 * Get the number of cells in each row/column/box, which is also the highest value
+	 ***************************************/
+	int getSize()
+	{
+		return size;
+	}
+
+	/****************************************
+	 * getCellCount()
+	 *
+	 * Get the number of cells in the grid
+	 ***************************************/
+	int getCellCount()
+	{
+		return cells;
+	}
+
 
 	/****************************************
 	 * cloneState()
@@ -71,97 +169,44 @@ public class SudokuGameState
 	 ***************************************/
 	SudokuGameState cloneState()
 	{
-		SudokuGameState newState = new SudokuGameState();
-		newState.setAll(
-				valuesSet,
-				value,
-				possibilities,
-				isInitialValue,
-				changed,
-				valueChanged,
-				possibilitiesChanged,
-				possibilityChanged,
-				prevChanged,
-				prevValueChanged,
-				prevPossibilitiesChanged,
-				prevPossibilityChanged
-			);
+		SudokuGameState newState = new SudokuGameState(houses);
+		newState.copyFrom(this);
 		return newState;
 	}
 
 
-	/****************************************
-	 * setAll()
-	 * 
-	 * Set gameState using entry values
-	 ***************************************/
-	void setAll(
-						int valuesSet,
-						int[][] value,
-						boolean[][][] possibilities,
-						boolean[][] isInitialValue,
-						boolean[][] changed,
-						boolean[][] valueChanged,
-						boolean[][][] possibilitiesChanged,
-						boolean[][] possibilityChanged,
-						boolean[][] prevChanged,
-						boolean[][] prevValueChanged,
-						boolean[][][] prevPossibilitiesChanged,
-						boolean[][] prevPossibilityChanged
-					)
-	{
-		this.valuesSet = valuesSet;
-		for (int y = 0; y < 9; y++)
-		{
-			for (int x = 0; x < 9; x++)
-			{
-				this.value[x][y] = value[x][y];
-				this.isInitialValue[x][y] = isInitialValue[x][y];
-				this.changed[x][y] = changed[x][y];
-				this.valueChanged[x][y] = valueChanged[x][y];
-				this.possibilityChanged[x][y] = possibilityChanged[x][y];
-				this.prevChanged[x][y] = prevChanged[x][y];
-				this.prevValueChanged[x][y] = prevValueChanged[x][y];
-				this.prevPossibilityChanged[x][y] = prevPossibilityChanged[x][y];
-				for (int i = 0; i < 9; i++)
-				{
-					this.possibilities[x][y][i] = possibilities[x][y][i];
-					this.possibilitiesChanged[x][y][i] = possibilitiesChanged[x][y][i];
-					this.prevPossibilitiesChanged[x][y][i] = prevPossibilitiesChanged[x][y][i];
-				}
-			}
-		}
-	}
-
 	/****************************************
 	 * copyFrom()
 	 * 
 	 * Update this GameState instance's fields from the specified GameState
+	 * Both states must be the same grid size
 	 ***************************************/
 	void copyFrom(SudokuGameState fromState)
 	{
-
-		for (int y = 0; y < 9; y++)
+		valuesSet = fromState.valuesSet;
+		hash = fromState.hash;
+		hashValid = fromState.hashValid;
+		derivedValid = fromState.derivedValid;
+		System.arraycopy(fromState.possibilities,0,possibilities,0,cells);
+		if (derivedValid)									// Otherwise they are rebuilt from the possibilities when needed
 		{
-			for (int x = 0; x < 9; x++)
-			{
-				value[x][y] = fromState.value[x][y];
-				isInitialValue[x][y] = fromState.isInitialValue[x][y];
-				changed[x][y] = fromState.changed[x][y];
-				valueChanged[x][y] = fromState.valueChanged[x][y];
-				possibilityChanged[x][y] = fromState.possibilityChanged[x][y];
-				prevChanged[x][y] = fromState.prevChanged[x][y];
-				prevValueChanged[x][y] = fromState.prevValueChanged[x][y];
-				prevPossibilityChanged[x][y] = fromState.prevPossibilityChanged[x][y];
-				for (int i = 0; i < 9; i++)
-				{
-					possibilities[x][y][i] = fromState.possibilities[x][y][i];
-					possibilitiesChanged[x][y][i] = fromState.possibilitiesChanged[x][y][i];
-					prevPossibilitiesChanged[x][y][i] = fromState.prevPossibilitiesChanged[x][y][i];
-				}
-			}
+			System.arraycopy(fromState.houseCount,0,houseCount,0,houseCount.length);
+			System.arraycopy(fromState.housePositions,0,housePositions,0,housePositions.length);
+			System.arraycopy(fromState.bivalueCells,0,bivalueCells,0,cells);
+			System.arraycopy(fromState.bivalueIndex,0,bivalueIndex,0,cells);
+			bivalueCount = fromState.bivalueCount;
 		}
+		System.arraycopy(fromState.value,0,value,0,cells);
+		System.arraycopy(fromState.isInitialValue,0,isInitialValue,0,cells);
 
+		if (changes.length < fromState.changes.length)
+			changes = new int[fromState.changes.length];
+		if (prevChanges.length < fromState.prevChanges.length)
+			prevChanges = new int[fromState.prevChanges.length];
+		changeCount = fromState.changeCount;
+		prevChangeCount = fromState.prevChangeCount;
+		System.arraycopy(fromState.changes,0,changes,0,changeCount);
+		System.arraycopy(fromState.prevChanges,0,prevChanges,0,prevChangeCount);
 	}
 
 	
@@ -174,22 +219,48 @@ public class SudokuGameState
 	void clear()
 	{
 		valuesSet = 0;
-		for (int y = 0; y < 9; y++)
+		hash = houses.emptyHash;
+		hashValid = true;
+		derivedValid = true;
+		Arrays.fill(value,0);
+		Arrays.fill(isInitialValue,false);
+		changeCount = 0;										// Empty the change logs
+		prevChangeCount = 0;
+		Arrays.fill(possibilities,houses.allPossibilities);	// Set all possibilities
+		Arrays.fill(houseCount,size);							// Every cell in every house can be every value
+		Arrays.fill(housePositions,houses.allPossibilities);
+		bivalueCount = 0;
+		Arrays.fill(bivalueIndex,-1);
+		for (int cell = 0; cell < cells; cell++)				// Only a grid of 2 values starts with bivalue cells
 		{
-			for (int x = 0; x < 9; x++)
-			{
-				value[x][y] = 0;
-				isInitialValue[x][y] = false;
+			updateBivalue(cell);
+		}
+		if (history != null)
+			history.clear();
+	}
 
-				prevValueChanged[x][y] = false;						// Default changed flags to all false
-				prevChanged[x][y] = false;
-				prevPossibilityChanged[x][y] = false;
-				Arrays.fill(prevPossibilitiesChanged[x][y],false);
+	/****************************************
+	 * cellIndex()
+	 *
+	 * Convert 1-based x,y coordinates to a cell index (0 upwards, row by row)
+	 ***************************************/
+	int cellIndex(int x, int y)
+	{
+		return (y-1)*size + (x-1);
+	}
 
-				cycleIteration(x+1,y+1);								// Cycle iteration to set previous flags to false
-				Arrays.fill(possibilities[x][y],true);				// Set all possibilities
-			}
-		}
+	/****************************************
+	 * cellX() / cellY()
+	 *
+	 * Convert a cell index to 1-based x,y coordinates
+	 ***************************************/
+	int cellX(int cell)
+	{
+		return cell % size + 1;
+	}
+	int cellY(int cell)
+	{
+		return cell / size + 1;
 	}
 
 	/****************************************
@@ -200,7 +271,11 @@ public class SudokuGameState
 	 ***************************************/
 	int getValue(int x, int y)
 	{
-		return value[x-1][y-1];
+		return value[cellIndex(x,y)];
+	}
+	int getValue(int cell)
+	{
+		return value[cell];
 	}
 
 	/****************************************
@@ -210,7 +285,11 @@ public class SudokuGameState
 	 ***************************************/
 	boolean isInitialValue(int x, int y)
 	{
-		return isInitialValue[x-1][y-1];
+		return isInitialValue[cellIndex(x,y)];
+	}
+	boolean isInitialValue(int cell)
+	{
+		return isInitialValue[cell];
 	}
 
 	/****************************************
@@ -221,22 +300,32 @@ public class SudokuGameState
 	 * 
 	 ***************************************/
 	void setValue(int x, int y, int value, boolean initialValue)
+	{
+		setValue(cellIndex(x,y), value, initialValue);
+	}
+	void setValue(int cell, int value, boolean initialValue)
 	{
 		if (value > 0)
 		{
-			this.value[x-1][y-1] = value;
+			if (!derivedValid)
+				rebuildDerived();
+			if (trailing)
+				addTrail(TRAIL_VALUE | (cell << CHANGE_SHIFT) | this.value[cell]);
+			else if (history != null)
+				history.add(TRAIL_VALUE | (cell << CHANGE_SHIFT) | this.value[cell] | (value << HISTORY_NEW_SHIFT));
+			hash ^= houses.zobristValue[cell*(size+1) + this.value[cell]] ^ houses.zobristValue[cell*(size+1) + value];
+			this.value[cell] = value;
 			if(initialValue)
-				isInitialValue[x-1][y-1] = true;
-			else
-			{
-				changed[x-1][y-1] = true;
-				valueChanged[x-1][y-1] = true;
-			}
-			for (int i = 1; i <= 9; i++)
+				isInitialValue[cell] = true;
+			else if (!trailing)								// Search states do not log changes
+				addChange(CHANGE_VALUE | (cell << CHANGE_SHIFT) | value);
+			for (int i = 1; i <= size; i++)
 			{
 				if (i != value)
-					clearPossibility(x,y,i);
+					clearPossibility(cell,i);
 			}
+			if (tracking)
+				markDirty(cell);
 
 			valuesSet++;
 		}
@@ -245,21 +334,25 @@ public class SudokuGameState
 	/****************************************
 	 * getSetValues()
 	 *
-	 * Get the number of values set so far (81 = solved)
+	 * Get the number of values set so far (all cells = solved)
 	 ***************************************/
 	int getSetValues()
 	{
+		if (!derivedValid)
+			rebuildDerived();
 		return valuesSet;
 	}
 
 	/****************************************
 	 * getRemainingValues()
 	 *
-	 * Get the number of values set so far (81 = solved)
+	 * Get the number of values still to set (0 = solved)
 	 ***************************************/
 	int getRemainingValues()
 	{
-		return 81-valuesSet;
+		if (!derivedValid)
+			rebuildDerived();
+		return cells-valuesSet;
 	}
 
 	/****************************************
@@ -269,9 +362,114 @@ public class SudokuGameState
 	 ***************************************/
 	boolean getPossibility(int x, int y, int value)
 	{
-		return possibilities[x-1][y-1][value-1];
+		return (possibilities[cellIndex(x,y)] & (1 << (value-1))) != 0;
+	}
+	boolean getPossibility(int cell, int value)
+	{
+		return (possibilities[cell] & (1 << (value-1))) != 0;
 	}
 
+	/****************************************
+	 * getPossibilityMask()
+	 *
+	 * Get all possibilities for a cell as a bit mask (bit 0 = value 1)
+	 ***************************************/
+	int getPossibilityMask(int x, int y)
+	{
+		return possibilities[cellIndex(x,y)];
+	}
+	int getPossibilityMask(int cell)
+	{
+		return possibilities[cell];
+	}
+
+	/****************************************
+	 * getPossibilityCount()
+	 *
+	 * Get the number of values still possible in a cell
+	 ***************************************/
+	int getPossibilityCount(int x, int y)
+	{
+		return Integer.bitCount(possibilities[cellIndex(x,y)]);
+	}
+	int getPossibilityCount(int cell)
+	{
+		return Integer.bitCount(possibilities[cell]);
+	}
+
+	/****************************************
+	 * getLowestPossibility()
+	 *
+	 * Get the lowest value still possible in a cell (0 if none)
+	 ***************************************/
+	int getLowestPossibility(int x, int y)
+	{
+		return getLowestPossibility(cellIndex(x,y));
+	}
+	int getLowestPossibility(int cell)
+	{
+		int mask = possibilities[cell];
+		if (mask == 0)
+			return 0;
+		return Integer.numberOfTrailingZeros(mask) + 1;
+	}
+
+
+	/****************************************
+	 * getHouseCount()
+	 *
+	 * Get the number of cells in a house that can be a particular value
+	 ***************************************/
+	int getHouseCount(int house, int value)
+	{
+		if (!derivedValid)
+			rebuildDerived();
+		return houseCount[house*size + value-1];
+	}
+
+	/****************************************
+	 * getHousePositions()
+	 *
+	 * Get a mask of the positions in a house that can be a particular value
+	 * (bit 0 = position 0, see SudokuHouses.houseCells)
+	 ***************************************/
+	int getHousePositions(int house, int value)
+	{
+		if (!derivedValid)
+			rebuildDerived();
+		return housePositions[house*size + value-1];
+	}
+
+	/****************************************
+	 * getBivalueCount() / getBivalueCell()
+	 *
+	 * Get the number of cells with exactly 2 possibilities, and each of them (index 0 to count-1)
+	 * The order changes as cells are added and removed
+	 ***************************************/
+	int getBivalueCount()
+	{
+		if (!derivedValid)
+			rebuildDerived();
+		return bivalueCount;
+	}
+	int getBivalueCell(int index)
+	{
+		if (!derivedValid)
+			rebuildDerived();
+		return bivalueCells[index];
+	}
+
+	/****************************************
+	 * isBivalue()
+	 *
+	 * Get if a cell has exactly 2 possibilities
+	 ***************************************/
+	boolean isBivalue(int cell)
+	{
+		if (!derivedValid)
+			rebuildDerived();
+		return bivalueIndex[cell] >= 0;
+	}
 
 	/****************************************
 	 * clearPossibility()
@@ -280,163 +478,544 @@ public class SudokuGameState
 	 ***************************************/
 	void clearPossibility(int x, int y, int value)
 	{
-		clearPossibility(x,y,value, false);
+		clearPossibility(cellIndex(x,y),value);
 	}
-	void clearPossibility(int x, int y, int value, boolean initialValue)
+	void clearPossibility(int cell, int value)
 	{
-		if (possibilities[x-1][y-1][value-1])
+		int bit = 1 << (value-1);
+		if ((possibilities[cell] & bit) != 0)
 		{
-			possibilities[x-1][y-1][value-1] = false;
-			if (initialValue == false)
+			if (!derivedValid)
+				rebuildDerived();
+			possibilities[cell] &= ~bit;
+			hash ^= houses.zobristPossibility[cell*size + value-1];
+			removeFromHouses(cell,value);
+			updateBivalue(cell);
+			if (tracking)
+				markDirty(cell);
+			if (trailing)
+				addTrail((cell << CHANGE_SHIFT) | value);
+			else
 			{
-				changed[x-1][y-1] = true;
-				possibilitiesChanged[x-1][y-1][value-1] = true;
-				possibilityChanged[x-1][y-1] = true;
+				addChange((cell << CHANGE_SHIFT) | value);
+				if (history != null)
+					history.add((cell << CHANGE_SHIFT) | value);
 			}
 		}
 	}
 
 	/****************************************
-	 * possibilityChanged()
+	 * startDirtyTracking() / stopDirtyTracking()
 	 *
-	 * Get if one or more possibilities in this cell have changed this iteration 
+	 * Queue every cell whose value or possibilities change, and the row, column and 3x3 of the cell
+	 * Tracking starts with everything queued, so the first pass looks at the whole grid
 	 ***************************************/
-	boolean possibilityChanged(int x, int y)
+	void startDirtyTracking()
 	{
-		return possibilityChanged[x-1][y-1];
+		if (cellDirty == null)
+		{
+			cellDirty = new boolean[cells];
+			houseDirty = new boolean[houses.houses];
+			dirtyCells = new int[cells];
+			dirtyHouses = new int[houses.houses];
+		}
+		dirtyCellHead = dirtyCellCount = 0;
+		dirtyHouseHead = dirtyHouseCount = 0;
+		Arrays.fill(cellDirty,false);
+		Arrays.fill(houseDirty,false);
+		for (int cell = 0; cell < cells; cell++)
+		{
+			markDirty(cell);
+		}
+		tracking = true;
 	}
-	boolean possibilityChanged(int x, int y, int value)
+	void stopDirtyTracking()
 	{
-		return possibilitiesChanged[x-1][y-1][value-1];
+		tracking = false;
 	}
 
 	/****************************************
-	 * valueChanged()
+	 * markDirty()
 	 *
-	 * Get if the value this cell has changed this iteration 
+	 * Queue a cell and its houses, unless already queued
 	 ***************************************/
-	boolean valueChanged(int x, int y)
+	private void markDirty(int cell)
 	{
-		return valueChanged[x-1][y-1];
+		int house;
+
+		if (!cellDirty[cell])
+		{
+			cellDirty[cell] = true;
+			dirtyCells[(dirtyCellHead + dirtyCellCount++) % cells] = cell;
+		}
+		for (int i = 0; i < 3; i++)
+		{
+			house = houses.cellHouses[cell][i];
+			if (!houseDirty[house])
+			{
+				houseDirty[house] = true;
+				dirtyHouses[(dirtyHouseHead + dirtyHouseCount++) % houses.houses] = house;
+			}
+		}
 	}
 
 	/****************************************
-	 * prevPossibilityChanged()
+	 * nextDirtyCell() / nextDirtyHouse()
 	 *
-	 * Get if one or more possibilities in this cell have changed in the previous iteration 
+	 * Take the next cell or house from its queue, -1 if it is empty
+	 * A change after it is taken queues it again
 	 ***************************************/
-	boolean prevPossibilityChanged(int x, int y)
+	int nextDirtyCell()
 	{
-		return prevPossibilityChanged[x-1][y-1];
+		int cell;
+
+		if (dirtyCellCount == 0)
+			return -1;
+		cell = dirtyCells[dirtyCellHead];
+		dirtyCellHead = (dirtyCellHead + 1) % cells;
+		dirtyCellCount--;
+		cellDirty[cell] = false;
+		return cell;
 	}
-	boolean prevPossibilityChanged(int x, int y, int value)
+	int nextDirtyHouse()
 	{
-		return prevPossibilitiesChanged[x-1][y-1][value-1];
+		int house;
+
+		if (dirtyHouseCount == 0)
+			return -1;
+		house = dirtyHouses[dirtyHouseHead];
+		dirtyHouseHead = (dirtyHouseHead + 1) % houses.houses;
+		dirtyHouseCount--;
+		houseDirty[house] = false;
+		return house;
 	}
 
 	/****************************************
-	 * prevValueChanged()
+	 * loadCellState() / endLoad()
 	 *
-	 * Get if the value this cell has changed in the previous iteration 
+	 * Set the value, possibilities and initial value flag of a cell directly, without
+	 * updating the possibilities of any other cell. Used to load a stored state (see SudokuStateCodec)
+	 * loadCellState() only writes the cell. endLoad(), once every cell is loaded, marks the values set, house counts
+	 * and positions, bivalue cells and hash out of date - they are worked out again when first needed, so a state
+	 * loaded only to be read or stored again does not pay for them
+	 * The changes are not logged, and cannot be undone with the trail. endLoad() empties the change logs,
+	 * so a state reloaded over and over (see SudokuStateArena.view()) does not collect the changes of every state
 	 ***************************************/
-	boolean prevValueChanged(int x, int y)
+	void loadCellState(int cell, int value, int mask, boolean initialValue)
 	{
-		return prevValueChanged[x-1][y-1];
+		this.value[cell] = value;
+		possibilities[cell] = mask;
+		isInitialValue[cell] = initialValue;
+	}
+	void endLoad()
+	{
+		derivedValid = false;
+		hashValid = false;
+		changeCount = 0;
+		prevChangeCount = 0;
 	}
 
 	/****************************************
-	 * cycleIteration()
+	 * rebuildDerived()
 	 *
-	 * Iteration has changed, udpate changed flags accordingly
+	 * Work out the values set, house counts and positions, and bivalue cells from the values and possibilities
 	 ***************************************/
-	void cycleIteration()
+	private void rebuildDerived()
 	{
-		for (int y = 1; y <= 9; y++)
+		int mask;
+		int bit;
+		int row;
+		int column;
+		int box;
+		int rowBit;
+		int columnBit;
+		int boxBit;
+
+		valuesSet = 0;
+		bivalueCount = 0;
+		Arrays.fill(housePositions,0);
+		for (int cell = 0; cell < cells; cell++)
 		{
-			for (int x = 1; x <= 9; x++)
+			if (value[cell] != 0)
+				valuesSet++;
+
+			mask = possibilities[cell];
+			row = houses.cellHouses[cell][SudokuHouses.ROW]*size;
+			column = houses.cellHouses[cell][SudokuHouses.COLUMN]*size;
+			box = houses.cellHouses[cell][SudokuHouses.BOX]*size;
+			rowBit = 1 << houses.cellPositions[cell][SudokuHouses.ROW];
+			columnBit = 1 << houses.cellPositions[cell][SudokuHouses.COLUMN];
+			boxBit = 1 << houses.cellPositions[cell][SudokuHouses.BOX];
+			while (mask != 0)								// For every possibility, add the cell's position to its houses
 			{
-				cycleIteration(x,y);
+				bit = Integer.numberOfTrailingZeros(mask);
+				mask &= mask-1;
+				housePositions[row + bit] |= rowBit;
+				housePositions[column + bit] |= columnBit;
+				housePositions[box + bit] |= boxBit;
 			}
-		}
-	}
-	void cycleIteration(int x, int y)
-	{
-		prevValueChanged[x-1][y-1] = valueChanged[x-1][y-1];
-		prevChanged[x-1][y-1] = changed[x-1][y-1];
-		prevPossibilityChanged[x-1][y-1] = possibilityChanged[x-1][y-1];
-		System.arraycopy(possibilitiesChanged[x-1][y-1],0,prevPossibilitiesChanged[x-1][y-1],0,9);
 
-		valueChanged[x-1][y-1] = false;
-		changed[x-1][y-1] = false;
-		possibilityChanged[x-1][y-1] = false;
-		Arrays.fill(possibilitiesChanged[x-1][y-1],false);
+			if (Integer.bitCount(possibilities[cell]) == 2)
+			{
+				bivalueIndex[cell] = bivalueCount;
+				bivalueCells[bivalueCount++] = cell;
+			}
+			else
+				bivalueIndex[cell] = -1;
+		}
+		for (int i = 0; i < houseCount.length; i++)
+		{
+			houseCount[i] = Integer.bitCount(housePositions[i]);
+		}
+		derivedValid = true;
 	}
 
 	/****************************************
-	 * validate()
+	 * getHash()
 	 *
-	 * Validate the GameState
+	 * Get the 64 bit Zobrist hash of the values and possibilities
+	 * Equal states of the same size have equal hashes, whatever order the changes were made in
+	 * Initial value flags and the change log are not included
 	 ***************************************/
-	boolean validate()
+	long getHash()
 	{
-		boolean[] found = new boolean[9];
+		int mask;
 
-		// Validate by Row
-		for (int y = 0; y < 9; y++)			// For every row
+		if (!hashValid)										// Loaded since the hash was last worked out, work it out from scratch
 		{
-			Arrays.fill(found,false);
-			for (int x = 0; x < 9; x++)		// For every cell in that row
+			hash = 0;
+			for (int cell = 0; cell < cells; cell++)
 			{
-				if (value[x][y] != 0)		// If cell has a value	
+				hash ^= houses.zobristValue[cell*(size+1) + value[cell]];
+				for (mask = possibilities[cell]; mask != 0; mask &= mask-1)
 				{
-					if (found[value[x][y]-1] == true)		// If we have already encountered this vlaue in this row, return false, gameState is invalid
-					{
-					//	System.out.println("Invalid by Row: " + (x+1) + "," + (y+1));
-						return false;
-					}
-					found[value[x][y]-1] = true;			// Else set this value as found
+					hash ^= houses.zobristPossibility[cell*size + Integer.numberOfTrailingZeros(mask)];
 				}
 			}
+			hashValid = true;
+		}
+		return hash;
+	}
+
+	/****************************************
+	 * getChangeCount()
+	 *
+	 * Get the number of changes logged this iteration
+	 ***************************************/
+	int getChangeCount()
+	{
+		return changeCount;
+	}
+
+	/****************************************
+	 * getChange()
+	 *
+	 * Get a change logged this iteration, in the order they were made
+	 * Decode with changeCell(), changeValue() and isValueChange()
+	 ***************************************/
+	int getChange(int i)
+	{
+		return changes[i];
+	}
+
+	/****************************************
+	 * getPrevChangeCount()
+	 *
+	 * Get the number of changes logged in the previous iteration
+	 ***************************************/
+	int getPrevChangeCount()
+	{
+		return prevChangeCount;
+	}
+
+	/****************************************
+	 * getPrevChange()
+	 *
+	 * Get a change logged in the previous iteration
+	 ***************************************/
+	int getPrevChange(int i)
+	{
+		return prevChanges[i];
+	}
+
+	/****************************************
+	 * changeCell()
+	 *
+	 * Get the cell index a logged change applies to
+	 ***************************************/
+	static int changeCell(int change)
+	{
+		return (change & (CHANGE_VALUE-1)) >> CHANGE_SHIFT;
+	}
+
+	/****************************************
+	 * changeValue()
+	 *
+	 * Get the value of a logged change - the new cell value or the possibility removed
+	 ***************************************/
+	static int changeValue(int change)
+	{
+		return change & ((1 << CHANGE_SHIFT)-1);
+	}
+
+	/****************************************
+	 * isValueChange()
+	 *
+	 * Get if a logged change set a cell value (otherwise it removed a possibility)
+	 ***************************************/
+	static boolean isValueChange(int change)
+	{
+		return (change & CHANGE_VALUE) != 0;
+	}
+
+	/****************************************
+	 * cycleIteration()
+	 *
+	 * Iteration has changed, this iteration's changes become the previous iteration's
+	 ***************************************/
+	void cycleIteration()
+	{
+		if (history != null)							// The iteration is one undoable action
+			history.endAction();
+
+		int[] swap = prevChanges;
+		prevChanges = changes;
+		prevChangeCount = changeCount;
+		changes = swap;
+		changeCount = 0;
+	}
+
+	/****************************************
+	 * addChange()
+	 *
+	 * Append an entry to this iteration's change log, growing it if required
+	 ***************************************/
+	private void addChange(int change)
+	{
+		if (changeCount == changes.length)
+			changes = Arrays.copyOf(changes, changes.length*2);
+		changes[changeCount++] = change;
+	}
+
+	/****************************************
+	 * startTrail()
+	 *
+	 * Start recording every change to the trail, so it can be undone with undoTo()
+	 * The change log is not maintained while the trail is active
+	 ***************************************/
+	void startTrail()
+	{
+		trailing = true;
+		trailSize = 0;
+	}
+
+	/****************************************
+	 * stopTrail()
+	 *
+	 * Stop recording changes and discard the trail
+	 ***************************************/
+	void stopTrail()
+	{
+		trailing = false;
+		trailSize = 0;
+	}
+
+	/****************************************
+	 * trailMark()
+	 *
+	 * Get the current position in the trail, to undo back to later
+	 ***************************************/
+	int trailMark()
+	{
+		return trailSize;
+	}
+
+	/****************************************
+	 * undoTo()
+	 *
+	 * Undo every change recorded since the specified trail mark, newest first
+	 ***************************************/
+	void undoTo(int mark)
+	{
+		while (trailSize > mark)
+		{
+			undoEntry(trail[--trailSize]);
 		}
+	}
+
+	/****************************************
+	 * undoEntry()
+	 *
+	 * Undo one trail or history entry
+	 ***************************************/
+	private void undoEntry(int entry)
+	{
+		int cell = changeCell(entry);
 
-		// Validate by Column
-		for (int x = 0; x < 9; x++)			// For every column
+		if (!derivedValid)
+			rebuildDerived();
+		if ((entry & TRAIL_VALUE) != 0)					// Value was set, put back the value it replaced
 		{
-			Arrays.fill(found,false);
-			for (int y = 0; y < 9; y++)		// For every cell in that column
+			hash ^= houses.zobristValue[cell*(size+1) + value[cell]] ^ houses.zobristValue[cell*(size+1) + changeValue(entry)];
+			value[cell] = changeValue(entry);
+			valuesSet--;
+		}
+		else											// Possibility was removed, put it back
+		{
+			hash ^= houses.zobristPossibility[cell*size + changeValue(entry)-1];
+			possibilities[cell] |= 1 << (changeValue(entry)-1);
+			addToHouses(cell,changeValue(entry));
+			updateBivalue(cell);
+		}
+	}
+
+	/****************************************
+	 * setHistory()
+	 *
+	 * Record every logged change to the history (null to stop recording)
+	 * The history ends an action each time the iteration is cycled
+	 ***************************************/
+	void setHistory(SudokuHistory history)
+	{
+		this.history = history;
+	}
+
+	/****************************************
+	 * undoHistoryEntry() / redoHistoryEntry()
+	 *
+	 * Undo or redo one history entry, called by SudokuHistory
+	 * The change is logged, so the grid can show it, but not recorded to the history again
+	 ***************************************/
+	void undoHistoryEntry(int entry)
+	{
+		int cell = changeCell(entry);
+
+		undoEntry(entry);
+		if ((entry & TRAIL_VALUE) != 0)
+			addChange(CHANGE_VALUE | (cell << CHANGE_SHIFT) | value[cell]);
+		else
+			addChange((cell << CHANGE_SHIFT) | changeValue(entry));
+	}
+	void redoHistoryEntry(int entry)
+	{
+		int cell = changeCell(entry);
+		int newValue = entry >>> HISTORY_NEW_SHIFT;
+
+		if (!derivedValid)
+			rebuildDerived();
+		if ((entry & TRAIL_VALUE) != 0)					// Set the value again
+		{
+			hash ^= houses.zobristValue[cell*(size+1) + value[cell]] ^ houses.zobristValue[cell*(size+1) + newValue];
+			value[cell] = newValue;
+			valuesSet++;
+			addChange(CHANGE_VALUE | (cell << CHANGE_SHIFT) | newValue);
+		}
+		else											// Remove the possibility again
+		{
+			hash ^= houses.zobristPossibility[cell*size + changeValue(entry)-1];
+			possibilities[cell] &= ~(1 << (changeValue(entry)-1));
+			removeFromHouses(cell,changeValue(entry));
+			updateBivalue(cell);
+			addChange(entry);
+		}
+	}
+
+	/****************************************
+	 * removeFromHouses()
+	 *
+	 * A possibility was removed from a cell, update the row, column and 3x3 it is in
+	 ***************************************/
+	private void removeFromHouses(int cell, int value)
+	{
+		int index;
+		for (int i = 0; i < 3; i++)
+		{
+			index = houses.cellHouses[cell][i]*size + value-1;
+			houseCount[index]--;
+			housePositions[index] &= ~(1 << houses.cellPositions[cell][i]);
+		}
+	}
+
+	/****************************************
+	 * addToHouses()
+	 *
+	 * A possibility was added to a cell, update the row, column and 3x3 it is in
+	 ***************************************/
+	private void addToHouses(int cell, int value)
+	{
+		int index;
+		for (int i = 0; i < 3; i++)
+		{
+			index = houses.cellHouses[cell][i]*size + value-1;
+			houseCount[index]++;
+			housePositions[index] |= 1 << houses.cellPositions[cell][i];
+		}
+	}
+
+	/****************************************
+	 * updateBivalue()
+	 *
+	 * The possibilities of a cell changed, add it to or remove it from the bivalue cells
+	 * Removing moves the last bivalue cell into its place, so both are constant time
+	 ***************************************/
+	private void updateBivalue(int cell)
+	{
+		int last;
+
+		if (Integer.bitCount(possibilities[cell]) == 2)
+		{
+			if (bivalueIndex[cell] < 0)
 			{
-				if (value[x][y] != 0)		// If cell has a value	
-				{
-					if (found[value[x][y]-1] == true)		// If we have already encountered this vlaue in this row, return false, gameState is invalid
-					{
-						//System.out.println("Invalid by Column: " + (x+1) + "," + (y+1));
-						return false;
-					}
-					found[value[x][y]-1] = true;			// Else set this value as found
-				}
+				bivalueIndex[cell] = bivalueCount;
+				bivalueCells[bivalueCount++] = cell;
 			}
 		}
+		else if (bivalueIndex[cell] >= 0)
+		{
+			last = bivalueCells[--bivalueCount];
+			bivalueCells[bivalueIndex[cell]] = last;
+			bivalueIndex[last] = bivalueIndex[cell];
+			bivalueIndex[cell] = -1;
+		}
+	}
+
+	/****************************************
+	 * addTrail()
+	 *
+	 * Append an entry to the trail, growing it if required
+	 ***************************************/
+	private void addTrail(int entry)
+	{
+		if (trailSize == trail.length)
+			trail = Arrays.copyOf(trail, trail.length*2);
+		trail[trailSize++] = entry;
+	}
 
-		// validate by 3x3
-		for (int y1 = 0; y1 < 9; y1+=3)					// For every 3x3 box (top left coord)
+	/****************************************
+	 * validate()
+	 *
+	 * Validate the GameState
+	 ***************************************/
+	boolean validate()
+	{
+		int found;					// Mask of values found so far (bit 0 = value 1)
+		int cell;
+
+		// Validate every row, column and 3x3
+		for (int house = 0; house < houses.houses; house++)
 		{
-			for (int x1 = 0; x1 < 9; x1+=3)
+			found = 0;
+			for (int i = 0; i < size; i++)		// For every cell in that house
 			{
-				Arrays.fill(found,false);
-				for (int y = y1; y < y1+3; y++)				// For every cell in this 3x3
+				cell = houses.houseCells[house][i];
+				if (value[cell] != 0)		// If cell has a value	
 				{
-					for (int x = x1; x < x1+3; x++)
+					if ((found & (1 << (value[cell]-1))) != 0)		// If we have already encountered this vlaue in this house, return false, gameState is invalid
 					{
-						if (value[x][y] != 0)		// If cell has a value	
-						{
-							if (found[value[x][y]-1] == true)		// If we have already encountered this vlaue in this row, return false, gameState is invalid
-							{
-								//System.out.println("Invalid by 3x3: " + (x+1) + "," + (y+1));
-								return false;
-							}
-							found[value[x][y]-1] = true;			// Else set this value as found
-						}
+						//System.out.println("Invalid in house " + house + ": " + cellX(cell) + "," + cellY(cell));
+						return false;
 					}
+					found |= 1 << (value[cell]-1);			// Else set this value as found
 				}
 			}
 		}
@@ -448,21 +1027,51 @@ public class SudokuGameState
 	/****************************************
 	 * valueStateToString()
 	 *
-	 * Output the value state as a string - 9 rows of 9 with line breaks
+	 * Output the value state as a string - a row of digits per row, with line breaks
+	 * Grids larger than 9x9 use letters for values above 9 (A = 10)
 	 ***************************************/
 	String valueStateToString()
 	{
 		// Copy state to string
 		StringBuilder textOut = new StringBuilder();
-		for (int y = 0; y < 9; y++)
+		for (int y = 0; y < size; y++)
 		{
-			for(int x = 0; x < 9; x++)
+			for(int x = 0; x < size; x++)
 			{
-				textOut.append(Integer.toString(value[x][y]));
+				textOut.append(Character.toUpperCase(Character.forDigit(value[y*size+x], size+1)));
 			}
 			textOut.append("%n");	// Format code for platform specific newline character
 		}
 		return String.format(textOut.toString());	// Format string, to convert %n to platform specific newline character, and return it
 	}
-		
+
+	/****************************************
+	 * loadValues()
+	 *
+	 * Set initial values from text in the valueStateToString() format
+	 * 0, . or a blank is an empty cell, line breaks are ignored
+	 * Returns false (leaving the state unchanged) if the text is not a valid grid of this size
+	 ***************************************/
+	boolean loadValues(String text)
+	{
+		String values = text.replaceAll("\\n|\\r","").replace('.','0').replace(' ','0');	// Remove newline characters, blanks are 0
+		int cellValue;
+
+		if (values.length() != cells)
+			return false;
+		for (int cell = 0; cell < cells; cell++)
+		{
+			if (Character.digit(values.charAt(cell), size+1) < 0)
+				return false;
+		}
+
+		for (int cell = 0; cell < cells; cell++)
+		{
+			cellValue = Character.digit(values.charAt(cell), size+1);
+			if (cellValue > 0)
+				setValue(cell, cellValue, true);
+		}
+		return true;
+	}
+
 }
@@ -0,0 +1,145 @@
+/*
+ * Sudoku Solver
+ * Author:    Jamie Speed
+ * Date:      2016-09-13
+ * Description:
+ * I wanted to teach myself Java, so I built this.
+ * This is a Sudoku Solving tool. The user can input a Sudoku puzzle and apply various solutions to it to see the results.
+ * It also supports solving the whole puzzle, using logical solutions or brute force recursion.
+ */
+package sudokusolver;
+
+/**
+ *
+ * @author Jamie Speed
+ */
+import java.util.*;
+
+
+/***********************************************************************
+* class SudokuHistory
+*
+* Undo/redo history for a SudokuGameState (see SudokuGameState.setHistory())
+* Holds the changes made by each action rather than copies of the state, so memory
+* grows with the number of changes and undo/redo only touch the cells that changed
+* Entries are recorded by the game state, and grouped into one action per iteration
+* Actions before the current position have been applied, actions after it have been undone
+* and can be redone until a new change is recorded
+***********************************************************************/
+public class SudokuHistory
+{
+
+	private int[] entries = new int[1024];		// Entries of every action, oldest first
+	private int entryCount = 0;
+	private int[] actionEnd = new int[64];		// Index in entries after the last entry of each action
+	private int actionCount = 0;
+	private int position = 0;					// Number of actions currently applied
+
+	/****************************************
+	 * clear()
+	 *
+	 * Discard all actions
+	 ***************************************/
+	void clear()
+	{
+		entryCount = 0;
+		actionCount = 0;
+		position = 0;
+	}
+
+	/****************************************
+	 * add()
+	 *
+	 * Record an entry to the current action. Any undone actions can no longer be redone
+	 ***************************************/
+	void add(int entry)
+	{
+		if (position < actionCount)
+		{
+			actionCount = position;
+			entryCount = actionStart(position);
+		}
+		if (entryCount == entries.length)
+			entries = Arrays.copyOf(entries, entries.length*2);
+		entries[entryCount++] = entry;
+	}
+
+	/****************************************
+	 * endAction()
+	 *
+	 * End the current action, if any entries were recorded to it
+	 ***************************************/
+	void endAction()
+	{
+		if (entryCount > actionStart(actionCount))
+		{
+			if (actionCount == actionEnd.length)
+				actionEnd = Arrays.copyOf(actionEnd, actionEnd.length*2);
+			actionEnd[actionCount++] = entryCount;
+			position = actionCount;
+		}
+	}
+
+	/****************************************
+	 * canUndo() / canRedo()
+	 *
+	 * Get if there is an action to undo or redo
+	 ***************************************/
+	boolean canUndo()
+	{
+		return position > 0 || entryCount > actionStart(actionCount);
+	}
+	boolean canRedo()
+	{
+		return position < actionCount;
+	}
+
+	/****************************************
+	 * undo()
+	 *
+	 * Undo the last applied action on the game state, newest change first
+	 * Returns false if there is nothing to undo
+	 ***************************************/
+	boolean undo(SudokuGameState gameState)
+	{
+		endAction();								// Include any changes not yet ended
+		if (position == 0)
+			return false;
+
+		position--;
+		for (int i = actionEnd[position]-1; i >= actionStart(position); i--)
+		{
+			gameState.undoHistoryEntry(entries[i]);
+		}
+		return true;
+	}
+
+	/****************************************
+	 * redo()
+	 *
+	 * Redo the next undone action on the game state, oldest change first
+	 * Returns false if there is nothing to redo
+	 ***************************************/
+	boolean redo(SudokuGameState gameState)
+	{
+		if (position == actionCount)
+			return false;
+
+		for (int i = actionStart(position); i < actionEnd[position]; i++)
+		{
+			gameState.redoHistoryEntry(entries[i]);
+		}
+		position++;
+		return true;
+	}
+
+	/****************************************
+	 * actionStart()
+	 *
+	 * Get the index in entries of the first entry of an action
+	 ***************************************/
+	private int actionStart(int action)
+	{
+		return (action == 0) ? 0 : actionEnd[action-1];
+	}
+}
@@ -0,0 +1,218 @@
+/*
+ * Sudoku Solver
+ * Author:    Jamie Speed
+ * Date:      2016-09-13
+ * Description:
+ * I wanted to teach myself Java, so I built this.
+ * This is a Sudoku Solving tool. The user can input a Sudoku puzzle and apply various solutions to it to see the results.
+ * It also supports solving the whole puzzle, using logical solutions or brute force recursion.
+ */
+package sudokusolver;
+
+/**
+ *
+ * @author Jamie Speed
+ */
+import java.util.*;
+
+
+/***********************************************************************
+* class SudokuHouses
+*
+* Lookup tables for the cells of a Sudoku grid of a particular size
+* The grid is made of boxes boxWidth cells wide and boxHeight cells high,
+* so each row, column and box holds size = boxWidth * boxHeight cells and values 1-size
+* (the standard 9x9 grid is 3x3 boxes, 16x16 is 4x4 boxes, 25x25 is 5x5 boxes)
+* Tables are built once per grid size and shared, STANDARD is the 9x9 grid
+* Cells are numbered 0 to cells-1, row by row
+* Houses are numbered 0 to houses-1: size rows, then size columns, then size boxes
+*	Cells of each house, in position order (box positions run left to right, top to bottom)
+*	Houses of each cell (row, column, box) and the cell's position within each
+*	Peers of each cell - the other cells that share a row, column or box with it
+*	Zobrist keys for hashing game states of this size
+***********************************************************************/
+public class SudokuHouses
+{
+
+	public static final int MAX_SIZE = 31;		// Possibility masks are held in an int, one bit per value
+
+	public static final int HOUSE_ROW = 0;
+
+	// Index into cellHouses / cellPositions, and house type
+	public static final int ROW		= 0;
+	public static final int COLUMN	= 1;
+	public static final int BOX		= 2;
+
+	private static final Map<Integer,SudokuHouses> SIZES = new HashMap<Integer,SudokuHouses>();
+
+	public static final SudokuHouses STANDARD = getHouses(3,3);
+
+	final int boxWidth;
+	final int boxHeight;
+	final int size;						// Cells per house, and highest value
+	final int cells;
+	final int houses;
+	final int houseColumn;				// First column house
+	final int house3x3;					// First box house
+	final int allPossibilities;			// Possibility mask with every value set
+
+	final int[][] houseCells;
+	final int[][] cellHouses;
+	final int[][] cellPositions;
+	final int[][] peers;
+
+	// Position masks, indexed [house type][position]
+	// lineSegments: positions in a row/column that are in the same box as this position
+	// boxLines: positions in a box that are in the same row/column as this position
+	final int[][] lineSegments;
+	final int[][] boxLines;
+
+	// Zobrist keys, a random 64 bit key per cell value and per cell possibility
+	// A game state hash is the XOR of the keys of every value set and every possibility remaining
+	// Keys come from a fixed seed, so equal states of the same size always hash the same
+	final long[] zobristValue;			// [cell*(size+1) + value], value 0 (no value) is 0
+	final long[] zobristPossibility;	// [cell*size + value-1]
+	final long emptyHash;				// Hash of a cleared state - no values, every possibility
+
+	/****************************************
+	 * getHouses()
+	 *
+	 * Get the tables for a grid made of boxes boxWidth x boxHeight, building them the first time
+	 ***************************************/
+	static SudokuHouses getHouses(int boxWidth, int boxHeight)
+	{
+		SudokuHouses houses;
+
+		if (boxWidth < 1 || boxHeight < 1 || boxWidth * boxHeight > MAX_SIZE)
+			throw new IllegalArgumentException("Unsupported box size " + boxWidth + "x" + boxHeight);
+
+		synchronized (SIZES)
+		{
+			houses = SIZES.get(boxWidth * 256 + boxHeight);
+			if (houses == null)
+			{
+				houses = new SudokuHouses(boxWidth, boxHeight);
+				SIZES.put(boxWidth * 256 + boxHeight, houses);
+			}
+		}
+		return houses;
+	}
+
+	/****************************************
+	 * SudokuHouses constructor
+	 *
+	 * Build the tables
+	 ***************************************/
+	private SudokuHouses(int boxWidth, int boxHeight)
+	{
+		int x;
+		int y;
+		int box;
+		int peerCount;
+
+		this.boxWidth = boxWidth;
+		this.boxHeight = boxHeight;
+		size = boxWidth * boxHeight;
+		cells = size * size;
+		houses = size * 3;
+		houseColumn = size;
+		house3x3 = size * 2;
+		allPossibilities = (1 << size) - 1;
+
+		houseCells = new int[houses][size];
+		cellHouses = new int[cells][3];
+		cellPositions = new int[cells][3];
+		peers = new int[cells][(size-1)*2 + (size - boxWidth - boxHeight + 1)];
+
+		for (int cell = 0; cell < cells; cell++)
+		{
+			x = cell % size;
+			y = cell / size;
+			box = (y/boxHeight)*boxHeight + x/boxWidth;		// boxHeight boxes across the grid
+
+			cellHouses[cell][ROW] = HOUSE_ROW + y;
+			cellHouses[cell][COLUMN] = houseColumn + x;
+			cellHouses[cell][BOX] = house3x3 + box;
+			cellPositions[cell][ROW] = x;
+			cellPositions[cell][COLUMN] = y;
+			cellPositions[cell][BOX] = (y%boxHeight)*boxWidth + x%boxWidth;
+
+			for (int i = 0; i < 3; i++)
+			{
+				houseCells[cellHouses[cell][i]][cellPositions[cell][i]] = cell;
+			}
+		}
+
+		for (int cell = 0; cell < cells; cell++)
+		{
+			peerCount = 0;
+			for (int other = 0; other < cells; other++)
+			{
+				if (other != cell && (cellHouses[other][ROW] == cellHouses[cell][ROW]
+									|| cellHouses[other][COLUMN] == cellHouses[cell][COLUMN]
+									|| cellHouses[other][BOX] == cellHouses[cell][BOX]))
+					peers[cell][peerCount++] = other;
+			}
+		}
+
+		lineSegments = new int[2][size];
+		boxLines = new int[2][size];
+		for (int position = 0; position < size; position++)
+		{
+			lineSegments[ROW][position] = ((1 << boxWidth) - 1) << (position/boxWidth)*boxWidth;		// Row runs across boxWidth cells of each box
+			lineSegments[COLUMN][position] = ((1 << boxHeight) - 1) << (position/boxHeight)*boxHeight;	// Column runs down boxHeight cells of each box
+			boxLines[ROW][position] = ((1 << boxWidth) - 1) << (position/boxWidth)*boxWidth;
+			for (int i = position % boxWidth; i < size; i += boxWidth)
+			{
+				boxLines[COLUMN][position] |= 1 << i;
+			}
+		}
+
+		Random random = new Random(0x5D0C0L + boxWidth * 256 + boxHeight);
+		long hash = 0;
+		zobristValue = new long[cells*(size+1)];
+		zobristPossibility = new long[cells*size];
+		for (int cell = 0; cell < cells; cell++)
+		{
+			for (int value = 1; value <= size; value++)
+			{
+				zobristValue[cell*(size+1) + value] = random.nextLong();
+				zobristPossibility[cell*size + value-1] = random.nextLong();
+				hash ^= zobristPossibility[cell*size + value-1];
+			}
+		}
+		emptyHash = hash;
+	}
+
+	/****************************************
+	 * houseType()
+	 *
+	 * Get the type of a house - ROW, COLUMN or BOX
+	 ***************************************/
+	int houseType(int house)
+	{
+		return house / size;
+	}
+
+	/****************************************
+	 * inHouse()
+	 *
+	 * Get if a cell is in the specified house
+	 ***************************************/
+	boolean inHouse(int cell, int house)
+	{
+		return cellHouses[cell][houseType(house)] == house;
+	}
+
+	/****************************************
+	 * isPeer()
+	 *
+	 * Get if two different cells share a row, column or box
+	 ***************************************/
+	boolean isPeer(int cell, int other)
+	{
+		return other != cell && (cellHouses[other][ROW] == cellHouses[cell][ROW]
+								|| cellHouses[other][COLUMN] == cellHouses[cell][COLUMN]
+								|| cellHouses[other][BOX] == cellHouses[cell][BOX]);
+	}
+}
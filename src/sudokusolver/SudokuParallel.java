@@ -0,0 +1,189 @@
+/*
+ * Sudoku Solver
+ * Author:    Jamie Speed
+ * Date:      2016-09-13
+ * Description:
+ * I wanted to teach myself Java, so I built this.
+ * This is a Sudoku Solving tool. The user can input a Sudoku puzzle and apply various solutions to it to see the results.
+ * It also supports solving the whole puzzle, using logical solutions or brute force recursion.
+ */
+package sudokusolver;
+
+/**
+ *
+ * @author Jamie Speed
+ */
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+
+
+/***********************************************************************
+* class SudokuParallel
+*
+* Brute force search spread over every processor with fork/join
+* The top of the search tree is split into tasks: each task takes the cell with the fewest possibilities
+* and forks a subtask for each value, on its own propagated copy of the state
+* Below SPLIT_DEPTH, or once the pool already has work queued to steal, a task searches its subtree
+* with a SudokuSearch instead of splitting further
+* Every task shares a count of solutions found, and a SudokuBudget for the search under the caller's budget
+* Once the limit is reached the search budget is cancelled, and the other tasks stop
+* Each thread counts its nodes in a budget of its own under the search budget, so node() needs no locking
+***********************************************************************/
+public class SudokuParallel
+{
+
+	private static final int SPLIT_DEPTH = 8;		// Deepest level that is split into subtasks
+	private static final int SURPLUS_TASKS = 2;		// Stop splitting once this many tasks are queued for other threads
+
+	private static final ForkJoinPool POOL = new ForkJoinPool();
+
+	/****************************************
+	 * solve()
+	 *
+	 * Find a solution of the game state, filling values with the value of every cell (index = cell)
+	 * Returns false if there is no solution, or the budget is exhausted before one is found. The game state is not changed
+	 ***************************************/
+	static boolean solve(SudokuGameState gameState, int[] values, SudokuBudget budget)
+	{
+		return search(gameState, 1, values, budget) > 0;
+	}
+
+	/****************************************
+	 * countSolutions()
+	 *
+	 * Count the solutions of the game state, stopping once limit solutions are found
+	 * If the budget is exhausted, returns the solutions found so far. The game state is not changed
+	 ***************************************/
+	static int countSolutions(SudokuGameState gameState, int limit, SudokuBudget budget)
+	{
+		return search(gameState, limit, null, budget);
+	}
+
+	/****************************************
+	 * search()
+	 *
+	 * Propagate the values already set on a copy of the state, then run the search in the pool
+	 * If values is not null, it is filled with the first solution found
+	 ***************************************/
+	private static int search(SudokuGameState gameState, int limit, int[] values, SudokuBudget budget)
+	{
+		SudokuGameState workState = gameState.cloneState();
+		SudokuSolutions solutions = new SudokuSolutions(workState, null);
+		Search search = new Search(limit, budget);
+
+		workState.startTrail();
+		for (int cell = 0; cell < workState.getCellCount(); cell++)
+		{
+			if (workState.getValue(cell) > 0 && !solutions.propagate(workState,cell))
+				return 0;
+		}
+
+		POOL.invoke(new SearchTask(workState, 0, search));
+
+		if (values != null && search.solution.get() != null)
+			System.arraycopy(search.solution.get(), 0, values, 0, values.length);
+		return Math.min(search.count.get(), limit);
+	}
+
+	/***********************************************************************
+	* class Search
+	*
+	* State shared by every task of one search
+	***********************************************************************/
+	private static class Search
+	{
+		final int limit;
+		final AtomicInteger count = new AtomicInteger();
+		final AtomicReference<int[]> solution = new AtomicReference<int[]>();
+		final SudokuBudget budget;			// Cancelled once the limit is reached, every task stops
+
+		Search(int limit, SudokuBudget budget)
+		{
+			this.limit = limit;
+			this.budget = new SudokuBudget(budget);
+		}
+	}
+
+	/***********************************************************************
+	* class SearchTask
+	*
+	* Search the subtree below a propagated state
+	***********************************************************************/
+	private static class SearchTask extends RecursiveAction
+	{
+		private static final long serialVersionUID = 1L;
+
+		private final SudokuGameState state;
+		private final int depth;
+		private final Search search;
+
+		SearchTask(SudokuGameState state, int depth, Search search)
+		{
+			this.state = state;
+			this.depth = depth;
+			this.search = search;
+		}
+
+		@Override
+		protected void compute()
+		{
+			SudokuSolutions solutions;
+			SudokuGameState child;
+			List<SearchTask> tasks;
+			int cell;
+
+			if (search.budget.isExhausted())
+				return;
+
+			if (depth >= SPLIT_DEPTH || getSurplusQueuedTaskCount() > SURPLUS_TASKS)
+			{
+				searchSubtree();
+				return;
+			}
+
+			solutions = new SudokuSolutions(state, null);
+			cell = solutions.chooseCell(state);
+			if (cell < 0)
+			{
+				searchSubtree();		// Nothing left to split, record the solution if this is one
+				return;
+			}
+
+			// A subtask for each possibility of the cell that propagates without a contradiction
+			tasks = new ArrayList<SearchTask>();
+			for (int mask = state.getPossibilityMask(cell); mask != 0; mask &= mask-1)
+			{
+				child = state.cloneState();
+				child.startTrail();
+				child.setValue(cell, Integer.numberOfTrailingZeros(mask) + 1, false);
+				if (solutions.propagate(child, cell))
+					tasks.add(new SearchTask(child, depth+1, search));
+			}
+			invokeAll(tasks);
+		}
+
+		/****************************************
+		 * searchSubtree()
+		 *
+		 * Search this task's subtree in this thread, counting each solution, until done or the search is stopped
+		 ***************************************/
+		private void searchSubtree()
+		{
+			SudokuBudget budget = new SudokuBudget(search.budget);
+			SudokuSearch subtree = new SudokuSearch(state, Integer.MAX_VALUE, budget);
+
+			while (subtree.hasNext())
+			{
+				int[] values = subtree.next();
+				search.solution.compareAndSet(null, values);
+				if (search.count.incrementAndGet() >= search.limit)
+				{
+					search.budget.cancel();
+					break;
+				}
+			}
+			budget.flush();
+		}
+	}
+}
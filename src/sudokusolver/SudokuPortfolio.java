@@ -0,0 +1,144 @@
+/*
+ * Sudoku Solver
+ * Author:    Jamie Speed
+ * Date:      2016-09-13
+ * Description:
+ * I wanted to teach myself Java, so I built this.
+ * This is a Sudoku Solving tool. The user can input a Sudoku puzzle and apply various solutions to it to see the results.
+ * It also supports solving the whole puzzle, using logical solutions or brute force recursion.
+ */
+package sudokusolver;
+
+/**
+ *
+ * @author Jamie Speed
+ */
+import java.util.*;
+import java.util.concurrent.*;
+
+
+/***********************************************************************
+* class SudokuPortfolio
+*
+* Race several solving engines on the same puzzle, one thread each, and take the first solution
+* No engine is best on every puzzle - logic is instant on easy grids, brute force wins on others
+* Each engine runs on its own copy of the game state, with its own SudokuSolutions - the copies are all made on the
+* caller's thread before any engine starts, so no engine reads the game state while the caller goes on to change it
+* under a race budget that is a child of the caller's budget: the winner cancels the race budget, and the others stop
+* The winner and its time are kept, so the choice of default engine can be tuned from real puzzles
+***********************************************************************/
+public class SudokuPortfolio
+{
+
+	// Engines raced by default, SudokuSolutions.ENGINE_ values (the bitboard only enters for 9x9 grids)
+	static final int[] DEFAULT_ENGINES = {SudokuSolutions.ENGINE_LOGIC, SudokuSolutions.ENGINE_RECURSIVE,
+											SudokuSolutions.ENGINE_DLX, SudokuSolutions.ENGINE_BITBOARD};
+
+	private static final ExecutorService THREADS = Executors.newCachedThreadPool(new ThreadFactory()
+	{
+		@Override
+		public Thread newThread(Runnable runnable)
+		{
+			Thread thread = new Thread(runnable, "SudokuPortfolio");
+			thread.setDaemon(true);
+			return thread;
+		}
+	});
+
+	private final int[] engines;
+	private int winner = -1;			// Engine of the last race won, -1 if no engine found a solution
+	private long winnerMillis = 0;
+
+	/****************************************
+	 * SudokuPortfolio constructor
+	 *
+	 * Race the default engines, or the engines specified
+	 ***************************************/
+	SudokuPortfolio()
+	{
+		this(DEFAULT_ENGINES);
+	}
+	SudokuPortfolio(int[] engines)
+	{
+		this.engines = engines.clone();
+	}
+
+	/****************************************
+	 * solve()
+	 *
+	 * Race the engines on the game state. If one finds a solution, return true and put the value of every cell in values
+	 * Returns false if no engine finds a solution within the budget. The game state is not changed
+	 ***************************************/
+	boolean solve(SudokuGameState gameState, int[] values, SudokuBudget budget)
+	{
+		final SudokuBudget race = new SudokuBudget(budget);
+		CompletionService<Integer> completion = new ExecutorCompletionService<Integer>(THREADS);
+		final Map<Integer,int[]> results = new ConcurrentHashMap<Integer,int[]>();
+		int entries = 0;
+		Integer engine;
+
+		winner = -1;
+		for (final int entry : engines)
+		{
+			if (entry == SudokuSolutions.ENGINE_BITBOARD && gameState.getHouses() != SudokuHouses.STANDARD)
+				continue;
+			final SudokuGameState entryState = gameState.cloneState();
+			completion.submit(new Callable<Integer>()
+			{
+				@Override
+				public Integer call()
+				{
+					int[] entryValues = new int[entryState.getCellCount()];
+
+					if (!new SudokuSolutions(entryState, null).findSolution(entry, entryValues, new SudokuBudget(race)))
+						return -1;
+					results.put(entry, entryValues);
+					return entry;
+				}
+			});
+			entries++;
+		}
+
+		// Take results as the engines finish, until one has a solution
+		try
+		{
+			for (int i = 0; i < entries && winner < 0; i++)
+			{
+				try
+				{
+					engine = completion.take().get();
+					if (engine >= 0)
+					{
+						winner = engine;
+						winnerMillis = race.getElapsedMillis();
+						System.arraycopy(results.get(engine), 0, values, 0, values.length);
+					}
+				}
+				catch (ExecutionException e)
+				{
+					e.getCause().printStackTrace();		// This engine failed, the others carry on
+				}
+			}
+		}
+		catch (InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+		}
+		race.cancel();								// Stop the engines still running
+		return winner >= 0;
+	}
+
+	/****************************************
+	 * getWinner() / getWinnerMillis()
+	 *
+	 * Get the engine that won the last race (-1 if none did), and how long it took
+	 ***************************************/
+	int getWinner()
+	{
+		return winner;
+	}
+	long getWinnerMillis()
+	{
+		return winnerMillis;
+	}
+}
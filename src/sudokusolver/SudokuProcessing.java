@@ -13,6 +13,8 @@ package sudokusolver;
  *
  * @author Jamie Speed
  */
+import java.util.concurrent.*;
+import javax.swing.*;
 
 
 /***********************************************************************
@@ -24,6 +26,7 @@ package sudokusolver;
 * 	Load user input from grid
 * 	clear grid
 * 	Apply solutions
+* 	Undo/redo solutions
 * 	Highlight cells
 ***********************************************************************/
 public class SudokuProcessing
@@ -32,6 +35,8 @@ public class SudokuProcessing
 	private LogTextArea log;
 	private SudokuGameState gameState = new SudokuGameState();
 	private SudokuSolutions solutions;
+	private SudokuHistory history = new SudokuHistory();
+	private SudokuBudget countBudget = null;			// Of the solution count running in the background, for the puzzle last loaded
 
 	private int[][] previousGrid = new int[9][9];
 
@@ -60,7 +65,19 @@ public class SudokuProcessing
 			{"Remove by 3x3 In Column    -","N"},
 			{"n Sets of n By Row         -","N"},
 			{"n Sets of n By Column      -","N"},
-			{"n Sets of n By 3x3         -","N"}
+			{"n Sets of n By 3x3         -","N"},
+			{"Hidden n Sets By Row       -","N"},
+			{"Hidden n Sets By Column    -","N"},
+			{"Hidden n Sets By 3x3       -","N"},
+			{"X-Wing                     -","N"},
+			{"Swordfish                  -","N"},
+			{"Jellyfish                  -","N"},
+			{"Finned X-Wing              -","N"},
+			{"Finned Swordfish           -","N"},
+			{"Finned Jellyfish           -","N"},
+			{"XY-Wing                    -","N"},
+			{"XYZ-Wing                   -","N"},
+			{"W-Wing                     -","N"}
 		};
 
 	public static final int S_SINGLE_P		= 0;
@@ -75,6 +92,20 @@ public class SudokuProcessing
 	public static final int S_POSS_N_ROW	= 9;
 	public static final int S_POSS_N_COL	= 10;
 	public static final int S_POSS_N_3X3	= 11;
+	public static final int S_HIDDEN_ROW	= 12;
+	public static final int S_HIDDEN_COL	= 13;
+	public static final int S_HIDDEN_3X3	= 14;
+	public static final int S_FISH_2		= 15;	// Fish of n rows/columns are S_FISH_2 + n-2
+	public static final int S_FISH_3		= 16;
+	public static final int S_FISH_4		= 17;
+	public static final int S_FINNED_2		= 18;	// Finned fish of n rows/columns are S_FINNED_2 + n-2
+	public static final int S_FINNED_3		= 19;
+	public static final int S_FINNED_4		= 20;
+	public static final int S_XY_WING		= 21;
+	public static final int S_XYZ_WING		= 22;
+	public static final int S_W_WING		= 23;
+
+	public static final long SEARCH_MILLIS = 10000;		// Time budget for solving from the UI, so a hard puzzle cannot hang it
 
 	/***********************************************************************
 	* SudokuProcessing()
@@ -87,6 +118,7 @@ public class SudokuProcessing
 		this.sudokuGrid = sudokuGrid;
 		this.log = log;
 		solutions = new SudokuSolutions(gameState,log);
+		gameState.setHistory(history);
 		for (int x = 0; x <9; x++)
 		{
 			for (int y = 0; y <9; y++)
@@ -124,9 +156,11 @@ public class SudokuProcessing
 					gameState.setValue(x,y,sudokuGrid.getInputValue(x,y),true);
 			}
 		}
+		history.clear();						// Loading the puzzle cannot be undone
 		updateGrid(true);
 		sudokuGrid.getPanel().revalidate();
 		sudokuGrid.getPanel().repaint();
+		logSolutionCount();
 	}
 
 	/***********************************************************************
@@ -144,9 +178,85 @@ public class SudokuProcessing
 					gameState.setValue(x,y,previousGrid[x-1][y-1],true);
 			}
 		}
+		history.clear();						// Loading the puzzle cannot be undone
 		updateGrid(true);
 		sudokuGrid.getPanel().revalidate();
 		sudokuGrid.getPanel().repaint();
+		logSolutionCount();
+	}
+
+	/***********************************************************************
+	* logSolutionCount()
+	* 
+	* Log if the puzzle just loaded has no solution, one solution, or more than one
+	* (or that it is unknown, if counting runs out of time)
+	* Only the copy of the game state is made here, the count runs in the background and is logged when it finishes
+	* Loading another puzzle cancels a count still running, and a cancelled count is not logged
+	***********************************************************************/
+	void logSolutionCount()
+	{
+		final SudokuBudget budget = new SudokuBudget(SudokuBudget.UNLIMITED, SEARCH_MILLIS);
+		final SudokuSearch search = new SudokuSearch(gameState, 2, budget);
+
+		if (countBudget != null)
+			countBudget.cancel();
+		countBudget = budget;
+		new SwingWorker<Integer,Void>()
+		{
+			@Override
+			protected Integer doInBackground()
+			{
+				int count = 0;
+
+				while (count < 2 && search.nextSolution())
+				{
+					count++;
+				}
+				return count;
+			}
+
+			@Override
+			protected void done()
+			{
+				if (budget.getStatus() == SudokuBudget.CANCELLED)
+					return;
+				try
+				{
+					logSolutionCount(get(), budget);
+				}
+				catch (InterruptedException e)
+				{
+					Thread.currentThread().interrupt();
+				}
+				catch (ExecutionException e)
+				{
+					e.getCause().printStackTrace();
+				}
+			}
+		}.execute();
+	}
+	private void logSolutionCount(int count, SudokuBudget budget)
+	{
+		if (budget.isExhausted() && count < 2)
+		{
+			System.out.println("Solution count unknown - " + budget);
+			log.addLine("Solution count unknown - " + budget);
+		}
+		else if (count == 0)
+		{
+			System.out.println("Puzzle has no solution");
+			log.addLine("Puzzle has no solution");
+		}
+		else if (count == 1)
+		{
+			System.out.println("Puzzle has a unique solution");
+			log.addLine("Puzzle has a unique solution");
+		}
+		else
+		{
+			System.out.println("Puzzle has more than one solution");
+			log.addLine("Puzzle has more than one solution");
+		}
 	}
 
 	/***********************************************************************
@@ -154,49 +264,76 @@ public class SudokuProcessing
 	* 
 	* Update game grid from current gamestate.
 	* If initialise = true, load all values as INITIAL format
-	* Otherwise, load.format changed values
+	* Otherwise, only update the cells in the gamestate change logs:
+	* 	changes from the previous iteration are formatted as appropriate for the current state
+	* 	changes from this iteration are highlighted as just changed
 	***********************************************************************/
 	// Update sudoku grid from current gameState
 	void updateGrid(boolean initialise)
 	{
-		for (int x = 1; x <= 9; x++)
+		if (initialise)
 		{
-			for (int y = 1; y <= 9; y++)
+			for (int x = 1; x <= 9; x++)
 			{
-				updateGrid(x, y, initialise);
+				for (int y = 1; y <= 9; y++)
+				{
+					updateGrid(x, y);
+				}
+			}
+		}
+		else
+		{
+			for (int i = 0; i < gameState.getPrevChangeCount(); i++)
+			{
+				updateGrid(gameState.getPrevChange(i), false);
+			}
+			for (int i = 0; i < gameState.getChangeCount(); i++)		// After previous changes, so these take priority
+			{
+				updateGrid(gameState.getChange(i), true);
 			}
 		}
 		sudokuGrid.getPanel().revalidate();
 		sudokuGrid.getPanel().repaint();
 	}
-	void updateGrid(int x, int y, boolean initialise)
+	void updateGrid(int x, int y)
 	{
 
 		// Set initial values, value with gray background or possibility grid
-		if (initialise)
+		if (gameState.isInitialValue(x,y))
 		{
-			if (gameState.isInitialValue(x,y))
-			{
-				sudokuGrid.setValue(x,y,gameState.getValue(x,y));
-				sudokuGrid.setFormat(x,y,SudokuGrid.FORMAT_INITIAL);
-				sudokuGrid.setValueMode(x,y);
-			}
-			else
-				sudokuGrid.setPossibilityMode(x,y);
+			sudokuGrid.setValue(x,y,gameState.getValue(x,y));
+			sudokuGrid.setFormat(x,y,SudokuGrid.FORMAT_INITIAL);
+			sudokuGrid.setValueMode(x,y);
+		}
+		else
+			sudokuGrid.setPossibilityMode(x,y);
 
-			// Initialise this cell's possibility grid to its initial gameState values
-			for (int i = 1; i <= 9; i++)
-			{
-				if (gameState.getPossibility(x,y,i) == false)		// If false, set to blank
-					sudokuGrid.setFormat(x,y,SudokuGrid.FORMAT_BLANK,i);
-			}
-		}	
+		// Initialise this cell's possibility grid to its initial gameState values
+		for (int i = 1; i <= 9; i++)
+		{
+			if (gameState.getPossibility(x,y,i) == false)		// If false, set to blank
+				sudokuGrid.setFormat(x,y,SudokuGrid.FORMAT_BLANK,i);
+		}
 
-		// Update from gamestate
-		else
+		// Refresh the display for this cell
+		sudokuGrid.refreshFormat(x,y);
+		for (int i = 1; i <= 9; i++)
+		{
+			sudokuGrid.refreshFormat(x,y,i);
+		}
+
+	}
+	void updateGrid(int change, boolean current)
+	{
+		int cell = SudokuGameState.changeCell(change);
+		int x = gameState.cellX(cell);
+		int y = gameState.cellY(cell);
+		int i = SudokuGameState.changeValue(change);
+
+		if (SudokuGameState.isValueChange(change))
 		{
 			// Value Changed this iteration, update and highlight as just changed
-			if (gameState.valueChanged(x,y))
+			if (current)
 			{
 				sudokuGrid.setValue(x,y,gameState.getValue(x,y));		// Update stored value, display as value
 				sudokuGrid.setValueMode(x,y);
@@ -206,7 +343,7 @@ public class SudokuProcessing
 					sudokuGrid.setFormat(x,y,SudokuGrid.FORMAT_CHANGED_TRANSPARENT);	// Else format as changed
 			}
 			// Value Changed previous iteration, format as appropriate for current state
-			else if (gameState.prevValueChanged(x,y))
+			else
 			{
 				if (gameState.getValue(x,y) == 0)
 				{
@@ -216,34 +353,26 @@ public class SudokuProcessing
 				else
 					sudokuGrid.setFormat(x,y,SudokuGrid.FORMAT_SET);		// Else format as normal
 			}
-
-			// Update possibilities
-			for (int i = 1; i <= 9; i++)
-			{
-				// Possibilities changed this iteration, update and highlight as just changed
-				if (gameState.possibilityChanged(x,y,i))
-				{
-					if (gameState.getPossibility(x,y,i))			// If new possibility is true
-						sudokuGrid.setFormat(x,y,SudokuGrid.FORMAT_CHANGED,i);		// new possibility is true, set changed
-					else
-						sudokuGrid.setFormat(x,y,SudokuGrid.FORMAT_REMOVED,i);		// Else, set change-removed
-				}
-				// Possibilities changed previous iteration, format as appropriate for current state
-				else if (gameState.prevPossibilityChanged(x,y,i))
-				{
-					if (gameState.getPossibility(x,y,i))			// If new possibility is true
-						sudokuGrid.setFormat(x,y,SudokuGrid.FORMAT_SET,i);			// new possibility is true, fornat as normal
-					else
-						sudokuGrid.setFormat(x,y,SudokuGrid.FORMAT_BLANK,i);		// Else format as blank
-				}
-			}
+			sudokuGrid.refreshFormat(x,y);
 		}
-
-		// Refresh the display for this cell
-		sudokuGrid.refreshFormat(x,y);
-		for (int i = 1; i <= 9; i++)
+		else
 		{
-			sudokuGrid.refreshFormat(x,y,i);
+			// Possibility changed this iteration, update and highlight as just changed
+			if (current)
+			{
+				if (gameState.getPossibility(x,y,i))			// If new possibility is true
+					sudokuGrid.setFormat(x,y,SudokuGrid.FORMAT_CHANGED,i);		// new possibility is true, set changed
+				else
+					sudokuGrid.setFormat(x,y,SudokuGrid.FORMAT_REMOVED,i);		// Else, set change-removed
+			}
+			// Possibility changed previous iteration, format as appropriate for current state
+			else
+			{
+				if (gameState.getPossibility(x,y,i))			// If new possibility is true
+					sudokuGrid.setFormat(x,y,SudokuGrid.FORMAT_SET,i);			// new possibility is true, fornat as normal
+				else
+					sudokuGrid.setFormat(x,y,SudokuGrid.FORMAT_BLANK,i);		// Else format as blank
+			}
 		}
 
 	}
@@ -252,64 +381,28 @@ public class SudokuProcessing
 	* solve()
 	* 
 	* Instruct SudokSolutions class to attempt to solve puzzle using all methods
+	* (driven by the cells and houses that change, see SudokuSolutions.solve()), then log the total for each method
 	* Update game grid from updated gamestate
 	* Cycle iteration (inform gamestate this iteration is finished, cycle changed flags)
 	* Update twice to remove last changed markers from last iteration
+	* Runs within a budget, by default SEARCH_MILLIS
 	***********************************************************************/
 	void solve()
 	{
-		int updatesThisIter = 0;
-		int maxIter = 50;
-
+		solve(new SudokuBudget(SudokuBudget.UNLIMITED, SEARCH_MILLIS));
+	}
+	void solve(SudokuBudget budget)
+	{
+		int[] totals = new int[LOG_TEXT.length];
+		boolean solved;
 
-		System.out.println("Iteration 0");
-		log.addLine("\nSolve Puzzle.\nIteration 0");
-		updatePossibilities(false);
+		System.out.println("Solve Puzzle");
+		log.addLine("\nSolve Puzzle.");
 
-		for (int i = 1; i <= maxIter; i++)
+		solved = solutions.solve(budget, totals);
+		for (int id = 0; id < totals.length; id++)
 		{
-			System.out.println("\nIteration " + i);
-			log.addLine("\nIteration " + i);
-
-			//*****************************
-			// Stanard solutions
-
-			// Value Updates
-			updatesThisIter = singlePossibility(false);
-			if (gameState.getRemainingValues() == 0)
-				break;
-			updatesThisIter += singleInRow(false);
-			if (gameState.getRemainingValues() == 0)
-				break;
-			updatesThisIter += singleInColumn(false);
-			if (gameState.getRemainingValues() == 0)
-				break;
-			updatesThisIter += singleIn3x3(false);
-			if (gameState.getRemainingValues() == 0)
-				break;
-
-			//*****************************
-			// Possibility Updates
-
-			updatesThisIter += updatePossibilities(false);
-			updatesThisIter += rowIn3x3(false);
-			updatesThisIter += columnIn3x3(false);
-			updatesThisIter += x3InColumn(false);
-			updatesThisIter += x3InRow(false);
-
-			//*****************************
-			// Recursive solutions
-		//	if (updatesThisIter == 0)
-			{
-				updatesThisIter += nSetsRow(0,false);
-				updatesThisIter += nSetsColumn(0,false); 
-				updatesThisIter += nSets3x3(0,false);
-			}
-
-			System.out.println("Updates: " + updatesThisIter);
-			log.addLine("Updates: " + updatesThisIter);
-			if (updatesThisIter == 0)
-				break;
+			logResult(id, totals[id]);
 		}
 
 		updateGrid(false);
@@ -317,32 +410,61 @@ public class SudokuProcessing
 		updateGrid(false);
 
 		// Results
-		if (gameState.getRemainingValues() == 0)
+		if (solved)
 		{
 			System.out.println("Success");
 			log.addLine("Success");
 		}
-		else if (updatesThisIter == 0)
+		else if (!budget.isExhausted())
 		{
-			System.out.println("Failed - no updates this iteration.");
-			log.addLine("Failed - no updates this iteration.");
+			System.out.println("Failed - no updates left.");
+			log.addLine("Failed - no updates left.");
 		}
 		else
 		{
-			System.out.println("Failed - max iterations reached.");
-			log.addLine("Failed - max iterations reached.");
+			System.out.println("Failed - " + budget + ".");
+			log.addLine("Failed - " + budget + ".");
 		}
 
 	}
 
 
 
+	/***********************************************************************
+	* solveRecursive()
+	* 
+	* Instruct SudokuSolutions class to solve the puzzle by brute force, with the specified engine
+	* (SudokuSolutions.ENGINE_RECURSIVE, ENGINE_DLX, ENGINE_BITBOARD, ENGINE_PARALLEL, ENGINE_LOGIC or ENGINE_PORTFOLIO)
+	* within a budget, by default SEARCH_MILLIS. For a portfolio race, log the engine that won
+	* Update game grid from updated gamestate
+	* Cycle iteration (inform gamestate this iteration is finished, cycle changed flags)
+	***********************************************************************/
 	void solveRecursive()
 	{
-		if(solutions.solveRecursive())
+		solveRecursive(SudokuSolutions.ENGINE_RECURSIVE);
+	}
+	void solveRecursive(int engine)
+	{
+		solveRecursive(engine, new SudokuBudget(SudokuBudget.UNLIMITED, SEARCH_MILLIS));
+	}
+	void solveRecursive(int engine, SudokuBudget budget)
+	{
+		if(solutions.solveRecursive(engine, budget))
 		{
 			System.out.println("\nRecursive solution successful");
 			log.addLine("Recursive solution successful");
+			if (engine == SudokuSolutions.ENGINE_PORTFOLIO)
+			{
+				System.out.println("Won by " + SudokuSolutions.ENGINE_NAMES[solutions.getPortfolio().getWinner()]
+									+ " in " + solutions.getPortfolio().getWinnerMillis() + "ms");
+				log.addLine("Won by " + SudokuSolutions.ENGINE_NAMES[solutions.getPortfolio().getWinner()]
+									+ " in " + solutions.getPortfolio().getWinnerMillis() + "ms");
+			}
+		}
+		else if (budget.isExhausted())
+		{
+			System.out.println("\nRecursive solution failed - " + budget);
+			log.addLine("Recursive solution failed - " + budget);
 		}
 		else
 		{
@@ -354,6 +476,52 @@ public class SudokuProcessing
 		updateGrid(false);
 	}
 
+	/***********************************************************************
+	* undo()
+	* 
+	* Undo the last solution applied (each update of the grid is one solution, Solve is one solution)
+	* Update game grid from updated gamestate, highlighting the cells undone
+	* Cycle iteration (inform gamestate this iteration is finished, cycle changed flags)
+	***********************************************************************/
+	void undo()
+	{
+		if (history.undo(gameState))
+		{
+			updateGrid(false);
+			gameState.cycleIteration();
+			System.out.println("Undo");
+			log.addLine("Undo. Remaining: " + gameState.getRemainingValues());
+		}
+		else
+		{
+			System.out.println("Nothing to undo");
+			log.addLine("Nothing to undo");
+		}
+	}
+
+	/***********************************************************************
+	* redo()
+	* 
+	* Redo the last solution undone
+	* Update game grid from updated gamestate, highlighting the cells redone
+	* Cycle iteration (inform gamestate this iteration is finished, cycle changed flags)
+	***********************************************************************/
+	void redo()
+	{
+		if (history.redo(gameState))
+		{
+			updateGrid(false);
+			gameState.cycleIteration();
+			System.out.println("Redo");
+			log.addLine("Redo. Remaining: " + gameState.getRemainingValues());
+		}
+		else
+		{
+			System.out.println("Nothing to redo");
+			log.addLine("Nothing to redo");
+		}
+	}
+
 	/***********************************************************************
 	* updatePossibilities()
 	* 
@@ -514,6 +682,147 @@ public class SudokuProcessing
 		return i;
 	}
 
+	/***********************************************************************
+	* hiddenSetsRow()
+	* 
+	* Instruct SudokuSolutions class to apply Hidden n Sets By Row solution to gamestate
+	* Update game grid from updated gamestate
+	* Cycle iteration (inform gamestate this iteration is finished, cycle changed flags)
+	***********************************************************************/
+	int hiddenSetsRow(int nRange, boolean update)
+	{
+		int i = solutions.hiddenSetsRow(nRange);
+		if (update)
+		{
+			updateGrid(false);
+			gameState.cycleIteration();
+		}
+		System.out.println("HSR Possibilities removed: " + i);
+		logResult(S_HIDDEN_ROW,i);
+		return i;
+	}
+
+	/***********************************************************************
+	* hiddenSetsColumn()
+	* 
+	* Instruct SudokuSolutions class to apply Hidden n Sets By Column solution to gamestate
+	* Update game grid from updated gamestate
+	* Cycle iteration (inform gamestate this iteration is finished, cycle changed flags)
+	***********************************************************************/
+	int hiddenSetsColumn(int nRange, boolean update)
+	{
+		int i = solutions.hiddenSetsColumn(nRange);
+		if (update)
+		{
+			updateGrid(false);
+			gameState.cycleIteration();
+		}
+		System.out.println("HSC Possibilities removed: " + i);
+		logResult(S_HIDDEN_COL,i);
+		return i;
+	}
+
+	/***********************************************************************
+	* hiddenSets3x3()
+	* 
+	* Instruct SudokuSolutions class to apply Hidden n Sets By 3x3 solution to gamestate
+	* Update game grid from updated gamestate
+	* Cycle iteration (inform gamestate this iteration is finished, cycle changed flags)
+	***********************************************************************/
+	int hiddenSets3x3(int nRange, boolean update)
+	{
+		int i = solutions.hiddenSets3x3(nRange);
+		if (update)
+		{
+			updateGrid(false);
+			gameState.cycleIteration();
+		}
+		System.out.println("HS3 Possibilities removed: " + i);
+		logResult(S_HIDDEN_3X3,i);
+		return i;
+	}
+
+	/***********************************************************************
+	* fish()
+	* 
+	* Instruct SudokuSolutions class to apply the fish solution of n rows/columns to gamestate
+	* (X-Wing n = 2, Swordfish n = 3, Jellyfish n = 4), basic or finned
+	* Update game grid from updated gamestate
+	* Cycle iteration (inform gamestate this iteration is finished, cycle changed flags)
+	***********************************************************************/
+	int fish(int n, boolean finned, boolean update)
+	{
+		int i = finned ? solutions.finnedFish(n) : solutions.fish(n);
+		if (update)
+		{
+			updateGrid(false);
+			gameState.cycleIteration();
+		}
+		System.out.println((finned ? "FF" : "FI") + n + " Possibilities removed: " + i);
+		logResult((finned ? S_FINNED_2 : S_FISH_2) + n-2,i);
+		return i;
+	}
+
+	/***********************************************************************
+	* xyWing()
+	* 
+	* Instruct SudokuSolutions class to apply XY-Wing solution to gamestate
+	* Update game grid from updated gamestate
+	* Cycle iteration (inform gamestate this iteration is finished, cycle changed flags)
+	***********************************************************************/
+	int xyWing(boolean update)
+	{
+		int i = solutions.xyWing();
+		if (update)
+		{
+			updateGrid(false);
+			gameState.cycleIteration();
+		}
+		System.out.println("XYW Possibilities removed: " + i);
+		logResult(S_XY_WING,i);
+		return i;
+	}
+
+	/***********************************************************************
+	* xyzWing()
+	* 
+	* Instruct SudokuSolutions class to apply XYZ-Wing solution to gamestate
+	* Update game grid from updated gamestate
+	* Cycle iteration (inform gamestate this iteration is finished, cycle changed flags)
+	***********************************************************************/
+	int xyzWing(boolean update)
+	{
+		int i = solutions.xyzWing();
+		if (update)
+		{
+			updateGrid(false);
+			gameState.cycleIteration();
+		}
+		System.out.println("XZW Possibilities removed: " + i);
+		logResult(S_XYZ_WING,i);
+		return i;
+	}
+
+	/***********************************************************************
+	* wWing()
+	* 
+	* Instruct SudokuSolutions class to apply W-Wing solution to gamestate
+	* Update game grid from updated gamestate
+	* Cycle iteration (inform gamestate this iteration is finished, cycle changed flags)
+	***********************************************************************/
+	int wWing(boolean update)
+	{
+		int i = solutions.wWing();
+		if (update)
+		{
+			updateGrid(false);
+			gameState.cycleIteration();
+		}
+		System.out.println("WW Possibilities removed: " + i);
+		logResult(S_W_WING,i);
+		return i;
+	}
+
 	/***********************************************************************
 	* rowIn3x3()
 	* 
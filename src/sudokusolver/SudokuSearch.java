@@ -0,0 +1,339 @@
+/*
+ * Sudoku Solver
+ * Author:    Jamie Speed
+ * Date:      2016-09-13
+ * Description:
+ * I wanted to teach myself Java, so I built this.
+ * This is a Sudoku Solving tool. The user can input a Sudoku puzzle and apply various solutions to it to see the results.
+ * It also supports solving the whole puzzle, using logical solutions or brute force recursion.
+ */
+package sudokusolver;
+
+/**
+ *
+ * @author Jamie Speed
+ */
+import java.nio.ByteBuffer;
+import java.util.*;
+
+
+/***********************************************************************
+* class SudokuSearch
+*
+* Brute force search that yields the solutions of a game state one at a time
+* Branches on the cell with the fewest possibilities first, with every guess propagated
+* (see SudokuSolutions.chooseCell() and propagate()), keeping its guesses on a stack preallocated
+* for every cell rather than the call stack, so grids of any size can be searched
+* The search stops where it is after each solution and carries on from there when the next is asked for
+* Runs on a trailed working copy of the state, so memory use does not grow with the number of solutions
+* Each guess is a node of the SudokuBudget - once it is exhausted the search is suspended, and can be resumed
+* later with a new budget, by any thread (one thread at a time), or saved with checkpoint() and restored elsewhere
+* As an Iterator, each solution is the value of every cell (index = cell, see SudokuGameState.cellIndex())
+***********************************************************************/
+public class SudokuSearch implements Iterator<int[]>
+{
+
+	private final SudokuHouses houses;
+	private final SudokuGameState state;		// Working copy being searched
+	private final SudokuSolutions solutions;	// Propagation and cell choice on the working copy
+	private final ByteBuffer root;				// Working copy before any guess, encoded for checkpoint()
+	private final int limit;					// Maximum number of solutions to return
+	private int found = 0;
+	private SudokuBudget budget;
+
+	// Stack of guesses. Per level: the cell guessed, the values still to try, the trail mark before the guess,
+	// and the value guessed (0 while it is undone)
+	private final int[] stackCell;
+	private final int[] stackMask;
+	private final int[] stackMark;
+	private final int[] stackValue;
+	private int depth = 0;
+
+	private boolean started = false;
+	private boolean finished = false;
+	private boolean suspended = false;			// Budget exhausted, waiting for resume()
+	private boolean ready = false;				// A solution has been found but not yet returned by next()
+
+	/****************************************
+	 * SudokuSearch constructor
+	 *
+	 * Prepare to search a copy of the game state, propagating the values already set. The game state is not changed
+	 * With a limit, stop after that many solutions, and with a budget, suspend when it is exhausted
+	 ***************************************/
+	SudokuSearch(SudokuGameState gameState)
+	{
+		this(gameState, Integer.MAX_VALUE, new SudokuBudget());
+	}
+	SudokuSearch(SudokuGameState gameState, int limit)
+	{
+		this(gameState, limit, new SudokuBudget());
+	}
+	SudokuSearch(SudokuGameState gameState, int limit, SudokuBudget budget)
+	{
+		this(gameState.getHouses(), limit, budget);
+
+		state.copyFrom(gameState);
+		state.startTrail();
+		for (int cell = 0; cell < houses.cells && !finished; cell++)
+		{
+			if (state.getValue(cell) > 0 && !solutions.propagate(state,cell))
+				finished = true;
+		}
+		SudokuStateCodec.encode(state, root);
+	}
+	private SudokuSearch(SudokuHouses houses, int limit, SudokuBudget budget)
+	{
+		this.houses = houses;
+		state = new SudokuGameState(houses);
+		solutions = new SudokuSolutions(state, null);
+		root = ByteBuffer.allocate(SudokuStateCodec.encodedSize(houses));
+		this.limit = limit;
+		this.budget = budget;
+
+		stackCell = new int[houses.cells];
+		stackMask = new int[houses.cells];
+		stackMark = new int[houses.cells];
+		stackValue = new int[houses.cells];
+	}
+
+	/****************************************
+	 * nextSolution()
+	 *
+	 * Search on to the next solution. If found, return true - the working state holds the solution until the next call
+	 * Returns false once every solution has been found, or if the budget is exhausted (see isSuspended())
+	 * The nodes counted are added to the budget's total whenever it returns, so the statistics are up to date between calls
+	 ***************************************/
+	boolean nextSolution()
+	{
+		int top;
+		int value;
+
+		if (finished || suspended)
+			return false;
+
+		if (!started)
+		{
+			started = true;
+			if (push())
+			{
+				budget.flush();
+				return true;
+			}
+		}
+
+		// Undo the last guess and try the next value for its cell, going back up a level when there are none left
+		while (depth > 0)
+		{
+			top = depth-1;
+			state.undoTo(stackMark[top]);
+			stackValue[top] = 0;
+			if (stackMask[top] == 0)
+			{
+				depth--;
+				continue;
+			}
+			if (!budget.node())
+			{
+				suspended = true;				// Nothing of the next guess is done, so resume() carries on from here
+				budget.flush();
+				return false;
+			}
+			value = Integer.numberOfTrailingZeros(stackMask[top]) + 1;
+			stackMask[top] &= stackMask[top]-1;
+			stackValue[top] = value;
+			state.setValue(stackCell[top], value, false);
+			if (solutions.propagate(state, stackCell[top]) && push())
+			{
+				budget.flush();
+				return true;
+			}
+		}
+		budget.flush();
+		finished = true;
+		return false;
+	}
+
+	/****************************************
+	 * push()
+	 *
+	 * Add a level for the next cell to guess. If no cell is left without a value, return true if the state is a solution
+	 ***************************************/
+	private boolean push()
+	{
+		int cell = solutions.chooseCell(state);
+
+		if (cell < 0)
+			return state.validate();
+		stackCell[depth] = cell;
+		stackMask[depth] = state.getPossibilityMask(cell);
+		stackMark[depth] = state.trailMark();
+		stackValue[depth] = 0;
+		depth++;
+		return false;
+	}
+
+	/****************************************
+	 * isSuspended() / isFinished()
+	 *
+	 * Get if the search stopped because the budget was exhausted, or because every solution (up to the limit) was found
+	 ***************************************/
+	boolean isSuspended()
+	{
+		return suspended;
+	}
+	boolean isFinished()
+	{
+		return finished || found >= limit;
+	}
+
+	/****************************************
+	 * resume()
+	 *
+	 * Carry on a suspended search with a new budget. The search can be resumed on a different thread
+	 ***************************************/
+	void resume(SudokuBudget budget)
+	{
+		this.budget = budget;
+		suspended = false;
+	}
+
+	/****************************************
+	 * checkpointSize()
+	 *
+	 * Get the number of bytes checkpoint() writes - the encoded root state and the stack of guesses
+	 ***************************************/
+	int checkpointSize()
+	{
+		return 4*7 + depth*4*3 + root.capacity();
+	}
+
+	/****************************************
+	 * checkpoint()
+	 *
+	 * Write the search to the buffer at its current position: grid size, limit, progress, the stack of guesses
+	 * (cell, values left to try, value guessed), then the state before any guess
+	 * Trail marks are not written, restore() finds them again by replaying the guesses
+	 ***************************************/
+	void checkpoint(ByteBuffer buffer)
+	{
+		buffer.putInt(houses.boxWidth);
+		buffer.putInt(houses.boxHeight);
+		buffer.putInt(limit);
+		buffer.putInt(found);
+		buffer.putInt((started ? 1 : 0) | (finished ? 2 : 0) | (ready ? 4 : 0));
+		buffer.putInt(depth);
+		for (int i = 0; i < depth; i++)
+		{
+			buffer.putInt(stackCell[i]);
+			buffer.putInt(stackMask[i]);
+			buffer.putInt(stackValue[i]);
+		}
+		buffer.putInt(root.capacity());
+		buffer.put((ByteBuffer) root.duplicate().clear());
+	}
+
+	/****************************************
+	 * restore()
+	 *
+	 * Create a search from a checkpoint, read from the buffer at its current position, to carry on within a budget
+	 * The working state is rebuilt from the root state by setting and propagating each guess again
+	 ***************************************/
+	static SudokuSearch restore(ByteBuffer buffer, SudokuBudget budget)
+	{
+		SudokuHouses houses = SudokuHouses.getHouses(buffer.getInt(), buffer.getInt());
+		SudokuSearch search = new SudokuSearch(houses, buffer.getInt(), budget);
+		int flags;
+		int rootSize;
+		int end;
+
+		search.found = buffer.getInt();
+		flags = buffer.getInt();
+		search.started = (flags & 1) != 0;
+		search.finished = (flags & 2) != 0;
+		search.ready = (flags & 4) != 0;
+		search.depth = buffer.getInt();
+		for (int i = 0; i < search.depth; i++)
+		{
+			search.stackCell[i] = buffer.getInt();
+			search.stackMask[i] = buffer.getInt();
+			search.stackValue[i] = buffer.getInt();
+		}
+
+		rootSize = buffer.getInt();
+		if (rootSize != search.root.capacity())
+			throw new IllegalArgumentException("Checkpoint root state is " + rootSize + " bytes, expected " + search.root.capacity());
+		end = buffer.position() + rootSize;
+		search.root.put((ByteBuffer) buffer.duplicate().limit(end));
+		buffer.position(end);
+		search.root.flip();
+		SudokuStateCodec.decode(search.root, search.state);
+
+		// Replay the guesses
+		search.state.startTrail();
+		for (int i = 0; i < search.depth; i++)
+		{
+			search.stackMark[i] = search.state.trailMark();
+			if (search.stackValue[i] > 0)
+			{
+				search.state.setValue(search.stackCell[i], search.stackValue[i], false);
+				search.solutions.propagate(search.state, search.stackCell[i]);
+			}
+		}
+		return search;
+	}
+
+	/****************************************
+	 * getState()
+	 *
+	 * Get the working state, which holds the last solution found while it is current
+	 ***************************************/
+	SudokuGameState getState()
+	{
+		return state;
+	}
+
+	/****************************************
+	 * getFound()
+	 *
+	 * Get the number of solutions returned so far
+	 ***************************************/
+	int getFound()
+	{
+		return found;
+	}
+
+	/****************************************
+	 * hasNext() / next() / remove()
+	 *
+	 * Iterator over the solutions, searching for each one only when it is asked for
+	 * hasNext() is false while the search is suspended
+	 ***************************************/
+	@Override
+	public boolean hasNext()
+	{
+		if (!ready && found < limit)
+			ready = nextSolution();
+		return ready;
+	}
+	@Override
+	public int[] next()
+	{
+		int[] values;
+
+		if (!hasNext())
+			throw new NoSuchElementException();
+		ready = false;
+		found++;
+		values = new int[houses.cells];
+		for (int cell = 0; cell < values.length; cell++)
+		{
+			values[cell] = state.getValue(cell);
+		}
+		return values;
+	}
+	@Override
+	public void remove()
+	{
+		throw new UnsupportedOperationException();
+	}
+}
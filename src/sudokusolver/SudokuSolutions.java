@@ -20,15 +20,47 @@ import java.util.*;
 * 
 * Contains methods for solving Sudoku puzzles solutions
 * Methods are applied to SudokuGameState
+* Works on any grid size the gameState supports, using its SudokuHouses tables
 * 
 ***********************************************************************/
 public class SudokuSolutions
 {
 
 	private SudokuGameState gameState;
-	private SudokuGameState recursiveSolvedState;
+	private SudokuHouses houses;
 	private LogTextArea log;
 
+	private int[] propagateQueue = new int[0];		// Cells given values and waiting to be propagated, see propagate()
+
+	// Working arrays for nSetsHouse(), hiddenSetsHouse() and fishValue(), one entry per cell, value or line of a house
+	private final int[] nSetItems;					// Cells without a value, values not yet placed, or rows/columns
+	private final int[] nSetMasks;					// Their possibility masks, or position masks
+	private final int[] nSetIndex;					// Combination being tried, indexes into nSetItems
+	private final int[] nSetUnion;					// Bits of the first masks of the combination
+	private int nSetDepth;
+	private int nSetMembers;						// Combination found by nextSet(), as a mask of indexes
+	private int nSetFound;							// and the bits of its masks
+
+	// Brute force engines for solveRecursive()
+	public static final int ENGINE_RECURSIVE	= 0;	// Backtracking over a copy of the gameState, see SudokuSearch
+	public static final int ENGINE_DLX			= 1;	// Dancing links, see SudokuDLX
+	public static final int ENGINE_BITBOARD		= 2;	// Bitboards, 9x9 only, see SudokuBitboard
+	public static final int ENGINE_PARALLEL		= 3;	// Fork/join over every processor, see SudokuParallel
+	public static final int ENGINE_LOGIC		= 4;	// solve(), then ENGINE_RECURSIVE if that does not finish
+	public static final int ENGINE_PORTFOLIO	= 5;	// Race engines against each other, see SudokuPortfolio
+	public static final String[] ENGINE_NAMES = {"Recursion","Dancing links (DLX)","Bitboard","Parallel (fork/join)",
+													"Logic, then recursion","Portfolio race"};
+
+	// Solution of each house type (ROW, COLUMN, BOX), as SudokuProcessing S_ ids, for the totals of solve()
+	private static final int[] SINGLE_SOLUTION = {SudokuProcessing.S_SINGLE_R, SudokuProcessing.S_SINGLE_C, SudokuProcessing.S_SINGLE_3};
+	private static final int[] LINE_SOLUTION = {SudokuProcessing.S_POSS_ROW_3, SudokuProcessing.S_POSS_COL_3, -1};
+	private static final int[] NSETS_SOLUTION = {SudokuProcessing.S_POSS_N_ROW, SudokuProcessing.S_POSS_N_COL, SudokuProcessing.S_POSS_N_3X3};
+	private static final int[] HIDDEN_SOLUTION = {SudokuProcessing.S_HIDDEN_ROW, SudokuProcessing.S_HIDDEN_COL, SudokuProcessing.S_HIDDEN_3X3};
+
+	private SudokuDLX dlx = null;					// Built on first use, then reused
+	private SudokuBitboard bitboard = null;
+	private SudokuPortfolio portfolio = null;
+
 	/***********************************************************************
 	* SudokuSolutions()
 	* 
@@ -37,48 +69,178 @@ public class SudokuSolutions
 	SudokuSolutions(SudokuGameState gameState, LogTextArea log)
 	{
 		this.gameState = gameState;
+		this.houses = gameState.getHouses();
 		this.log = log;
+
+		nSetItems = new int[houses.size];
+		nSetMasks = new int[houses.size];
+		nSetIndex = new int[houses.size];
+		nSetUnion = new int[houses.size];
 	}
 
 	/***********************************************************************
 	* Solve()
 	* 
-	* Try all solutions = 1 iteration
-	* Repeat until solved, or until all solutions produced zero udpates in one interation
+	* Apply every logical solution until solved, or until none of them can make another update
+	* Solutions are not run over the whole grid in turn: the gameState queues each cell and row/column/3x3
+	* that changes (see SudokuGameState.startDirtyTracking()), and only those are looked at again,
+	* so the work done follows the number of updates rather than the size of the grid
+	* 	Cells - see solveCell()
+	* 	Rows/columns/3x3s - see solveHouse()
+	* 	Once both queues are empty, the whole grid solutions - see solveGrid()
+	* Each cell or house taken from a queue is a node of the budget, and solving stops when it is exhausted
+	* If totals is given, the updates made by each solution are added to it (indexed by SudokuProcessing S_ ids)
+	* Return true if solved
 	***********************************************************************/
 	boolean solve()
 	{
-		int updatesThisIter;
-		int maxIter = 50;
+		return solve(new SudokuBudget(), null);
+	}
+	boolean solve(SudokuBudget budget)
+	{
+		return solve(budget, null);
+	}
+	boolean solve(SudokuBudget budget, int[] totals)
+	{
+		int[] counts = totals != null ? totals : new int[SudokuProcessing.LOG_TEXT.length];
+		int cell;
+		int house;
 
-		for (int i = 0; i < maxIter; i++)
+		gameState.startDirtyTracking();
+		while (gameState.getRemainingValues() > 0 && budget.node())
 		{
-			updatesThisIter = 0;
-			updatesThisIter += updatePossibilities();
-			updatesThisIter += singlePossibility();
-			if (gameState.getRemainingValues() == 0)
-				return true;
-			updatesThisIter += singlePossibility();
-			if (gameState.getRemainingValues() == 0)
-				return true;
-			updatesThisIter += singleInColumn();
-			if (gameState.getRemainingValues() == 0)
-				return true;
-			updatesThisIter += singleInRow();
-			if (gameState.getRemainingValues() == 0)
-				return true;
-			updatesThisIter += singleIn3x3();
-			if (gameState.getRemainingValues() == 0)
-				return true;
-			if (updatesThisIter == 0)
+			if ((cell = gameState.nextDirtyCell()) >= 0)			// Cells first, so houses see the possibilities they remove
+				solveCell(cell, counts);
+			else if ((house = gameState.nextDirtyHouse()) >= 0)
+				solveHouse(house, counts);
+			else if (solveGrid(counts) == 0)					// Any update queues cells and houses again
+				break;
+		}
+		gameState.stopDirtyTracking();
+		budget.flush();
+
+		if (gameState.getRemainingValues() == 0)
+			return true;
+		if (budget.isExhausted())
+			System.out.println("Solve failed - " + budget);
+		else
+			System.out.println("Solve failed, no updates left");
+		return false;
+	}
+
+	/***********************************************************************
+	* solveCell()
+	* 
+	* Apply the cell solutions to one cell
+	* 	If it has a value, remove that possibility from the rest of its row/column/3x3 (Remove by Value)
+	* 	If it has no value and a single possibility, set it (Single Possibility)
+	* Updates are added to totals. Return number of updates
+	***********************************************************************/
+	int solveCell(int cell, int[] totals)
+	{
+		int count = 0;
+
+		if (gameState.getValue(cell) > 0)
+		{
+			count = updatePossibilities(gameState, cell);
+			totals[SudokuProcessing.S_POSS_VAL] += count;
+		}
+		else if (gameState.getPossibilityCount(cell) == 1)
+		{
+			gameState.setValue(cell, gameState.getLowestPossibility(cell), false);
+			count = 1;
+			totals[SudokuProcessing.S_SINGLE_P]++;
+		}
+		return count;
+	}
+
+	/***********************************************************************
+	* solveHouse()
+	* 
+	* Apply the house solutions to one row/column/3x3, for every value
+	* 	Single in row/column/3x3
+	* 	Row/column in 3x3 (for a row or column), 3x3 in row and 3x3 in column (for a 3x3)
+	* 	n sets of n, hidden n sets of n
+	* Updates are added to totals. Return number of updates
+	***********************************************************************/
+	int solveHouse(int house, int[] totals)
+	{
+		int type = houses.houseType(house);
+		int count;
+		int total = 0;
+
+		for (int value = 1; value <= houses.size; value++)
+		{
+			count = singleInHouse(house, value);
+			totals[SINGLE_SOLUTION[type]] += count;
+			total += count;
+			if (type == SudokuHouses.BOX)
+			{
+				count = x3InLine(house, SudokuHouses.ROW, value);
+				totals[SudokuProcessing.S_POSS_3_ROW] += count;
+				total += count;
+				count = x3InLine(house, SudokuHouses.COLUMN, value);
+				totals[SudokuProcessing.S_POSS_3_COL] += count;
+				total += count;
+			}
+			else
 			{
-				System.out.println("Solve failed, no updates this iteration");
-				return false;
+				count = lineIn3x3(house, value);
+				totals[LINE_SOLUTION[type]] += count;
+				total += count;
 			}
 		}
-		System.out.println("Solve failed, max iterations reached");
-		return false;
-		
+		count = nSetsHouse(house, 0, true);				// Hidden sets find the larger ones, as the cells left over
+		totals[NSETS_SOLUTION[type]] += count;
+		total += count;
+		count = hiddenSetsHouse(house, 0);
+		totals[HIDDEN_SOLUTION[type]] += count;
+		return total + count;
+	}
+
+	/***********************************************************************
+	* solveGrid()
+	* 
+	* Apply the whole grid solutions, stopping at the first that makes an update
+	* so the cheaper cell and house solutions get to follow it up
+	* 	XY-Wing, XYZ-Wing, W-Wing (driven by the gameState bivalue cells)
+	* 	Fish of 2, 3 and 4 rows/columns (X-Wing, Swordfish, Jellyfish), then finned fish
+	* Updates are added to totals. Return number of updates
+	***********************************************************************/
+	int solveGrid(int[] totals)
+	{
+		int count;
+
+		if ((count = xyWing()) > 0)
+		{
+			totals[SudokuProcessing.S_XY_WING] += count;
+			return count;
+		}
+		if ((count = xyzWing()) > 0)
+		{
+			totals[SudokuProcessing.S_XYZ_WING] += count;
+			return count;
+		}
+		if ((count = wWing()) > 0)
+		{
+			totals[SudokuProcessing.S_W_WING] += count;
+			return count;
+		}
+		for (int n = 2; n <= 4; n++)
+		{
+			count = fish(n);
+			totals[SudokuProcessing.S_FISH_2 + n-2] += count;
+			if (count > 0)
+				return count;
+		}
+		for (int n = 2; n <= 4; n++)
+		{
+			count = finnedFish(n);
+			totals[SudokuProcessing.S_FINNED_2 + n-2] += count;
+			if (count > 0)
+				return count;
+		}
+		return 0;
 	}
 
 	/***********************************************************************
@@ -99,66 +261,37 @@ public class SudokuSolutions
 	{
 		int count = 0;
 
-		for (int y = 1; y <= 9; y++)					// For every cell
+		for (int cell = 0; cell < currentState.getCellCount(); cell++)			// For every cell
 		{
-			for (int x = 1; x <= 9; x++)
-			{
-				count += updatePossibilities(currentState,x,y);		// Update possibilities in the row/column/3x3
-			}
+			count += updatePossibilities(currentState,cell);		// Update possibilities in the row/column/3x3
 		}
 		return count;
 	}
 
 	int updatePossibilities(int x, int y)
 	{
-		return updatePossibilities(gameState, x, y);
+		return updatePossibilities(gameState, gameState.cellIndex(x,y));
 	}
 	int updatePossibilities(SudokuGameState currentState, int x, int y)
+	{
+		return updatePossibilities(currentState, currentState.cellIndex(x,y));
+	}
+	int updatePossibilities(SudokuGameState currentState, int cell)
 	{
 		int count = 0;
 		int value;
-		int x3Start;			// Start and end of this 3x3 block
-		int x3End;
-		int y3Start;
-		int y3End;
 
-		value = currentState.getValue(x,y);
+		value = currentState.getValue(cell);
 		if (value > 0)							// If the cell has a value
 		{
-
-			for (int x1 = 1; x1 <= 9; x1++)		// Remove this possibility from every other cell in the row
-			{
-				if (x != x1 && currentState.getPossibility(x1,y,value))	// If not same cell, and if not already removed
-				{
-					currentState.clearPossibility(x1,y,value);
-					count++;
-				}
-			}
-			for (int y1 = 1; y1 <= 9; y1++)		// Remove this possibility from the other cells in this column
+			for (int peer : currentState.getHouses().peers[cell])		// Remove this possibility from every other cell in the row/column/3x3
 			{
-				if (y != y1 && currentState.getPossibility(x,y1,value))	// If not same cell, and if not already removed
+				if (currentState.getPossibility(peer,value))	// If not already removed
 				{
-					currentState.clearPossibility(x,y1,value);
+					currentState.clearPossibility(peer,value);
 					count++;
 				}
 			}
-
-			// Remove this possibility from the other cells in this 3x3 box
-			x3Start = (((x-1)/3)*3)+1;				// Start and end of this 3x3 block
-			x3End = x3Start + 3;
-			y3Start = (((y-1)/3)*3)+1;
-			y3End = y3Start + 3;
-			for (int y1 = y3Start; y1 < y3End; y1++)	// For every cell in this 3x3
-			{
-				for (int x1 = x3Start; x1 < x3End; x1++)
-				{
-					if (x != x1 && y != y1 && currentState.getPossibility(x1,y1,value))	// If not same cell, and if not already removed
-					{
-						currentState.clearPossibility(x1,y1,value);
-						count++;
-					}
-				}
-			}
 		}
 
 		return count;
@@ -177,37 +310,15 @@ public class SudokuSolutions
 	{
 		int count = 0;
 
-		int valueFound;
-
-		for (int x = 1; x <= 9; x++)				// For every cell  
+		for (int cell = 0; cell < houses.cells; cell++)			// For every cell
 		{
-			for (int y = 1; y <= 9; y++)
+			// If this cell does not have a value yet and only one possibility remains, it must be that value
+			if (gameState.getValue(cell) == 0 && gameState.getPossibilityCount(cell) == 1)
 			{
-				valueFound = 0;
-				if (gameState.getValue(x,y) == 0)		// If this cell does not have a value yet
-				{
-					for (int i = 1; i <= 9; i++)	// Check every possibile value, if only one possibility store it
-					{
-						if (gameState.getPossibility(x,y,i))	// If possible
-						{
-							if (valueFound == 0)				// If first find, store it
-								valueFound = i;
-							else								// If this the second find, clear found and stop checking this cell - does not have single possibility
-							{
-								valueFound = 0;
-								break;
-							}
-						}
-					}
-				}
-				if (valueFound > 0)				// If we only found possibility, this cell must have that value
-				{
-					gameState.setValue(x,y,valueFound,false);
-					count++;
-				}
+				gameState.setValue(cell,gameState.getLowestPossibility(cell),false);
+				count++;
 			}
-					
-		}		
+		}
 
 		return count;
 	}
@@ -226,40 +337,12 @@ public class SudokuSolutions
 	{
 		int count = 0;
 
-		int yFound;
-
-		for (int i = 1; i <= 9; i++)				// for every possibility 1-9
+		for (int i = 1; i <= houses.size; i++)		// for every possibility
 		{
-			for (int x = 1; x <= 9; x++)				// For every column
+			for (int x = 1; x <= houses.size; x++)		// For every column
 			{
-				yFound = 0;
-				for (int y = 1; y <= 9; y++)			// for every cell in this column y 1-9, check if only one cell with this possibility
-				{
-					if (gameState.getValue(x,y) == i)	// If a cell in this column is already set to this value, no other cell can be so forget it
-					{
-						yFound = 0;
-						break;
-					}	
-
-					if (gameState.getPossibility(x,y,i))	// If this cell has this possibility
-					{
-						// We have found this possibility in this cell
-						if (yFound == 0)				// If this the first find, set found and record the coordinate
-							yFound = y;
-						else							// If this the second find, clear found and stop checking this column
-						{
-							yFound = 0;
-							break;
-						}
-					}
-				}
-				if (yFound > 0)				// If we only found one cell with this possibility, that cell must have that value (unless it does already)
-				{
-					gameState.setValue(x,yFound,i,false);
-					count++;
-				}
+				count += singleInHouse(houses.houseColumn + x-1, i);
 			}
-					
 		}
 		return count;
 	}
@@ -278,40 +361,12 @@ public class SudokuSolutions
 	{
 		int count = 0;
 
-		int xFound;
-
-		for (int i = 1; i <= 9; i++)				// for every possibility 1-9
+		for (int i = 1; i <= houses.size; i++)		// for every possibility
 		{
-			for (int y = 1; y <= 9; y++)				// For every row
+			for (int y = 1; y <= houses.size; y++)		// For every row
 			{
-				xFound = 0;
-				for (int x = 1; x <= 9; x++)			// for every cell in this row x 1-9, check if only one cell with this possibility
-				{
-					if (gameState.getValue(x,y) == i)	// If a cell in this row is already set to this value, no other cell can be so forget it
-					{
-						xFound = 0;
-						break;
-					}	
-					if (gameState.getPossibility(x,y,i))	// If this cell has this possibility
-					{
-
-						// We have found this possibility in this cell
-						if (xFound == 0)				// If this the first find, set found and record the coordinate
-							xFound = x;
-						else							// If this the second find, clear found and stop checking this row
-						{
-							xFound = 0;
-							break;
-						}
-					}
-				}
-				if (xFound > 0)				// If we only found one cell with this possibility, that cell must have that value
-				{
-					gameState.setValue(xFound,y,i,false);
-					count++;
-				}
+				count += singleInHouse(SudokuHouses.HOUSE_ROW + y-1, i);
 			}
-					
 		}
 		return count;
 	}
@@ -329,56 +384,42 @@ public class SudokuSolutions
 	int singleIn3x3()
 	{
 		int count = 0;
-		int xFound;
-		int yFound;
-
 
-		for (int i = 1; i <= 9; i++)				// for every possibility 1-9
+		for (int i = 1; i <= houses.size; i++)		// for every possibility
 		{
-			for (int y1 = 1; y1 <= 9; y1+=3)					// For every 3x3 box (top left coord)
+			for (int box = 0; box < houses.size; box++)	// For every 3x3 box
 			{
-				for (int x1 = 1; x1 <= 9; x1+=3)
-				{
-					xFound = 0;
-					yFound = 0;
-					loopWithin3x3:
-					for (int y = y1; y < y1+3; y++)				// For every cell in this 3x3, check if only one cell with this possibility
-					{
-						for (int x = x1; x < x1+3; x++)
-						{
-							if (gameState.getValue(x,y) == i)	// If a cell in this 3x3 is already set to this value, no other cell can be so forget it
-							{
-								xFound = 0;
-								break loopWithin3x3;
-							}	
-							if (gameState.getPossibility(x,y,i))	// If this cell has this possibility
-							{
-								// We have found this possibility in this cell
-								if (xFound == 0)				// If this the first find, set found and record the coordinate
-								{
-									xFound = x;
-									yFound = y;
-								}
-								else							// If this the second find, clear found and stop checking this row
-								{
-									xFound = 0;
-									break loopWithin3x3;
-								}
-							}
-
-						}
-					}
-					if (xFound > 0)				// If we only found one cell with this possibility, that cell must have that value
-					{
-						gameState.setValue(xFound,yFound,i,false);
-						count++;
-					}
-				}
+				count += singleInHouse(houses.house3x3 + box, i);
 			}
 		}
 		return count;
 	}
 
+	/***********************************************************************
+	* singleInHouse()
+	* 
+	* Value Updates - Single In Row/Column/3x3, for one house and value
+	* 
+	* Uses the gameState house counts, so the cells of the house do not need to be scanned
+	* If only one cell in this house has a specific possibility, it must be that value (unless it is already set). Set it to that value
+	* 		Return number of values added (0 or 1).
+	***********************************************************************/
+	int singleInHouse(int house, int value)
+	{
+		int cell;
+
+		if (gameState.getHouseCount(house,value) == 1)			// If only one cell in the house can be this value
+		{
+			cell = houses.houseCells[house][Integer.numberOfTrailingZeros(gameState.getHousePositions(house,value))];
+			if (gameState.getValue(cell) == 0)					// If a cell in this house is already set to this value, it will be the only one
+			{
+				gameState.setValue(cell, value, false);
+				return 1;
+			}
+		}
+		return 0;
+	}
+
 	/***********************************************************************
 	* nSetsRow()
 	* 
@@ -391,28 +432,10 @@ public class SudokuSolutions
 	int nSetsRow(int nRange)
 	{
 		int total = 0;
-		int[][] cellList = new int[9][3];
 
-		// Get coordinates of every cell in row
-		for (int y = 1; y <= 9; y++)				// For every row
+		for (int y = 1; y <= houses.size; y++)		// For every row
 		{
-			int index = 0;
-			for (int x = 1; x <= 9; x++)			// for every cell in this row
-			{
-				if (gameState.getValue(x,y) == 0)	// If cell does not have a value, it is eligible for inclusion - log coordinates
-				{
-					cellList[index][0] = x;			//x
-					cellList[index][1] = y;			//y
-					cellList[index++][2] = 0;		//setting (0 = not in set, 1 = in set)
-				}
-			}
-			for (int i = index; i < 9; i++)
-			{
-				Arrays.fill(cellList[i],0);			// Empty the remainder of the coordinates array
-			}
-
-			if (index >= 2)							// Process if at least 2 cells found in this row
-				total += nSetsProcessing(cellList, index, nRange);
+			total += nSetsHouse(SudokuHouses.HOUSE_ROW + y-1, nRange);
 		}
 		return total;
 	}
@@ -429,28 +452,10 @@ public class SudokuSolutions
 	int nSetsColumn(int nRange)
 	{
 		int total = 0;
-		int[][] cellList = new int[9][3];
 
-		// Get coordinates of every cell in column
-		for (int x = 1; x <= 9; x++)				// For every column
+		for (int x = 1; x <= houses.size; x++)		// For every column
 		{
-			int index = 0;
-			for (int y = 1; y <= 9; y++)			// for every cell in this column
-			{
-				if (gameState.getValue(x,y) == 0)	// If cell does not have a value, it is eligible for inclusion - log coordinates
-				{
-					cellList[index][0] = x;			//x
-					cellList[index][1] = y;			//y
-					cellList[index++][2] = 0;		//setting (0 = not in set, 1 = in set)
-				}
-			}
-			for (int i = index; i < 9; i++)
-			{
-				Arrays.fill(cellList[i],0);			// Empty the remainder of the coordinates array
-			}
-
-			if (index >= 2)							// Process if at least 2 cells found in this column
-				total += nSetsProcessing(cellList, index, nRange);
+			total += nSetsHouse(houses.houseColumn + x-1, nRange);
 		}
 		return total;
 	}
@@ -467,386 +472,585 @@ public class SudokuSolutions
 	int nSets3x3(int nRange)
 	{
 		int total = 0;
-		int[][] cellList = new int[9][3];
-
 
-		// Get coordinates of every cell in row
-		for (int y1 = 1; y1 <= 9; y1+=3)					// For every 3x3 box (top left coord)
+		for (int box = 0; box < houses.size; box++)	// For every 3x3 box
 		{
-			for (int x1 = 1; x1 <= 9; x1+=3)
-			{
-				int index = 0;
-				for (int y = y1; y < y1+3; y++)				// For every cell in this 3x3
-				{
-					for (int x = x1; x < x1+3; x++)
-					{
-
-						if (gameState.getValue(x,y) == 0)	// If cell does not have a value, it is eligible for inclusion - log coordinates
-						{
-							cellList[index][0] = x;			//x
-							cellList[index][1] = y;			//y
-							cellList[index++][2] = 0;		//setting (0 = not in set, 1 = in set)
-						}
-
-					}
-				}
-				for (int i = index; i < 9; i++)
-				{
-					Arrays.fill(cellList[i],0);			// Empty the remainder of the coordinates array
-				}
-
-				if (index >= 2)							// Process if at least 2 cells found in this row
-					total += nSetsProcessing(cellList, index, nRange);
-			}
+			total += nSetsHouse(houses.house3x3 + box, nRange);
 		}
-
 		return total;
 	}
 
 	/***********************************************************************
-	* nSetsProcessing()
+	* nSetsHouse()
 	* 
-	* Possibility Updates -  n sets of n, processing
+	* Possibility Updates -  n sets of n, for one row/column/3x3
 	* 
-	* called with a list of cells that make up the current row/col/3x3
-	* For each set size (2-7, or specified set size), recursively calculate if an n set of n exists. If so, process the results
+	* Take the possibility masks of the cells in the house that do not have a value, then for each set size n
+	* (2 to cells-2, or the specified set size) find every n of them holding only n possibilities between them (see nextSet())
+	* No other cell in the house can be any of those possibilities. Remove them
+	* With half set, only sets of up to half the cells are looked for: the cells left over by a larger set are a hidden set,
+	* so solve() finds those with hiddenSetsHouse() instead
+	* Works on preallocated arrays, nothing is allocated per house
+	*  		Return number of possibilities removed.
 	***********************************************************************/
-	int nSetsProcessing(int[][] cellList, int index, int nRange)
+	int nSetsHouse(int house, int nRange)
+	{
+		return nSetsHouse(house, nRange, false);
+	}
+	int nSetsHouse(int house, int nRange, boolean half)
 	{
 		int total = 0;
-		int[][] foundCellList = new int[9][3];
-		boolean[] possibilities = new boolean[9];
-		boolean[] finalPossibilities = new boolean[9];
+		int count = 0;
+		int removed;
 
-		// Clear out empty cells in array
-		for(int i = index; i < 9; i++)
+		for (int cell : houses.houseCells[house])	// for every cell in this house without a value
 		{
-			cellList[i][0] = cellList[i][1] = 0;
+			if (gameState.getValue(cell) == 0)
+				nSetItems[count++] = cell;
 		}
+		readCellMasks(count);
 
-
-		// For each value of n (2 to 7, not exceeding the number of cells
 		// minimum 2, set of 1 makes no sense
-		// max of number of cells -1
-			//(-1 means the last cell must be sole possibility, so should have been picked up by value by row/col/3x3)
-		for (int n = 2; n <= 7 && n < index-1; n++)
+		// max of number of cells -2 (the cells left over would be a set of 1 or 0, found by single in row/column/3x3)
+		for (int n = 2; n < count-1 && (!half || n <= count/2); n++)
 		{
-			if (nRange == 0 || nRange == n)		// If the nRange setting allows this n number
-			{
+			if (nRange != 0 && nRange != n)		// If the nRange setting does not allow this n number
+				continue;
 
-			// Clear out arrays for this iteration
-				for (int i = 0; i < 9; i++)
+			firstSet();
+			while (nextSet(count, n, 0))
+			{
+				removed = 0;
+				for (int i = 0; i < count; i++)		// Every cell outside the set
 				{
-					cellList[i][2] = 0;					//setting (-1 = do not process, 0 = not in set, 1 = in set)
+					if ((nSetMembers & (1 << i)) == 0)
+						removed += clearPossibilities(nSetItems[i], nSetMasks[i] & nSetFound);
+				}
+				if (removed > 0)
+				{
+					total += removed;
+					readCellMasks(count);
 				}
-				Arrays.fill(possibilities,false);
-				Arrays.fill(finalPossibilities,false);
-
-				total += nSetsRecursion(9, 0, n, index-1, cellList, 0, possibilities, 0);
-
-
 			}
 		}
-
-
 		return total;
 	}
 
 	/***********************************************************************
-	* nSetsProcessResults()
+	* hiddenSetsRow()
 	* 
-	* Possibility Updates -  n sets of n, processing
+	* Possibility Updates -  hidden n sets of n, by row
 	* 
-	* n set of n was found, remove the possibilties for every cell not in the set (cellList where [i][2] = 0)
-	* Return number of possibilities removed
+	* For every row
+	* 	If n values can only be in the same n cells of that row, then those cells cannot be any other value. Remove them
+	*  		Return number of possibilities removed.
 	***********************************************************************/
-	int nSetsProcessResults(int[][] cellList, boolean[] possibilities)
+	int hiddenSetsRow(int nRange)
 	{
 		int total = 0;
-		boolean cellPossibility;
-		//It was successful.
-		//cellList contains every cell, with [i][2] = 1 if part of set
-		//possibilities contains the possibilities int he set
 
-		// Every cell outside of the set (cellList[i][2] = 0) can not be any of those possibilities
-
-		for (int i = 0; i < cellList.length && cellList[i][0] != 0; i++)
+		for (int y = 1; y <= houses.size; y++)		// For every row
 		{
-			if (cellList[i][2] == 0)
-			{
-				for (int j = 1; j <= possibilities.length; j++)
-				{
-					if (possibilities[j-1] == true)
-					{
-						cellPossibility = gameState.getPossibility(cellList[i][0],cellList[i][1],j);
-						if (cellPossibility == true)
-						{
-							gameState.clearPossibility(cellList[i][0],cellList[i][1],j);
-							total += 1;
-						}
-					}
-				}
-			}
+			total += hiddenSetsHouse(SudokuHouses.HOUSE_ROW + y-1, nRange);
 		}
 		return total;
 	}
 
-//cell		this cell (index of cellList) INCREMENT WITH EVERY CALL
-//n		the number of cells to include in the set CONSTANT
-//maxi	the max number of cells that can be checked (size of cellList)
-// cellList
 	/***********************************************************************
-	* nSetsRecursion()
+	* hiddenSetsColumn()
 	* 
-	* Possibility Updates -  n sets of n, processing
+	* Possibility Updates -  hidden n sets of n, by column
 	* 
-	* Recursive scn through list of cells to try every possible combination, to see if an n set of n can be found
-	* If found, return true and set:
-	* 	foundCellList contains all cells in row. Set flag on those cells included
+	* For every column
+	* 	If n values can only be in the same n cells of that column, then those cells cannot be any other value. Remove them
+	*  		Return number of possibilities removed.
 	***********************************************************************/
-	int nSetsRecursion(int id, int cell, int n, int maxCells, int[][] cellList, int setCount, boolean[] possibilities, int possibilitiesCount)
+	int hiddenSetsColumn(int nRange)
 	{
 		int total = 0;
-		boolean cellAdded;
-		boolean cellPossibility;
-		int newPossibilitiesCount = possibilitiesCount;
-		boolean[] newPossibilities = new boolean[9];
-		System.arraycopy(possibilities,0,newPossibilities,0,9);
-		id*=10;
-
-		//************************
-		// Add this cell to the set
-
-		// Mark cell as added to the set
-		cellAdded = true;
-		cellList[cell][2] = 1;
-		setCount++;
-
-		// Add to the possibilites list/count
-		for (int i = 1; i <= 9; i++)
-		{
-			cellPossibility = gameState.getPossibility(cellList[cell][0],cellList[cell][1],i);
-			if (cellPossibility == true && newPossibilities[i-1] == false)
-			{
-				newPossibilities[i-1] = true;
-				newPossibilitiesCount++;
-			}
-		}
-		//************************
-		// Are we at max depth? We have n sets?
-		if (setCount == n)
-		{
-			// Do the n cells have n possibilties? We are at n sets of n?
-			if (newPossibilitiesCount == n)
-			{
-				total += nSetsProcessResults(cellList, newPossibilities);		// Perform the possibility updates for this set, add them to the total
-			}
-
-			// Max depth means we cannot add another cell to this set. Remove this cell from the set
-			cellAdded = false;
-			cellList[cell][2] = 0;
-			setCount--;
 
-		}
-
-
-		//************************
-		// Iterate down, add other cells to the set
-
-		// If there are more cells available
-		if (cell < maxCells)
+		for (int x = 1; x <= houses.size; x++)		// For every column
 		{
-			// If this cell is in the set, try with this cell included in the set. Then remove it from the set so we can try without this cell
-			if (cellAdded)
-			{
-				total += nSetsRecursion(id+1,cell+1, n, maxCells, cellList, setCount, newPossibilities, newPossibilitiesCount);
-				cellAdded = false;
-				cellList[cell][2] = 0;
-				setCount--;
-			}
-
-			// Try with this cell included in thi set
-			total += nSetsRecursion(id,cell+1, n, maxCells, cellList, setCount, possibilities, possibilitiesCount);
+			total += hiddenSetsHouse(houses.houseColumn + x-1, nRange);
 		}
-
-		//Return total possibiltiies removed by this iteration and any subsequent iterations
 		return total;
-
 	}
 
 	/***********************************************************************
-	* rowIn3x3()
+	* hiddenSets3x3()
 	* 
-	* Possibility Updates -  Remove by Row in 3x3
+	* Possibility Updates -  hidden n sets of n, by 3x3
 	* 
-	* For every row
-	* If 3 or less cells in a row can be value n and they are in the same 3x3, then no other cell in that 3x3 ouside the row can be n. Remove it
+	* For every 3x3
+	* 	If n values can only be in the same n cells of that 3x3, then those cells cannot be any other value. Remove them
 	*  		Return number of possibilities removed.
 	***********************************************************************/
-	int rowIn3x3()
+	int hiddenSets3x3(int nRange)
 	{
 		int total = 0;
-		int x3Start;
-		int y3Start;
 
-		for (int i = 1; i < 9; i++)			// For each possibility
+		for (int box = 0; box < houses.size; box++)	// For every 3x3 box
 		{
-			for (int y = 1; y <= 9; y++)		// For each row
-			{
-				y3Start = (((y-1)/3)*3)+1;		// Calculate Y coordinate of the 3x3s it intersects
-				x3Start = 0;
-
-				for (int x = 1; x <= 9; x++)		// For each cell in this row
-				{
-					if (gameState.getPossibility(x,y,i))		// If it can be this possibility
-					{
-						if (x3Start == 0)						// If this is the first matching cell, record the 3x3 box x coord. Wth y coord of row we now have both
-							x3Start = (((x-1)/3)*3)+1;
-						else if (x3Start != (((x-1)/3)*3)+1)	// If this is the second matching cell, is it in the same 3x3? If not, stop here and set no matches
-						{
-							x3Start = 0;
-							break;
-						}
-					}
-				}
-
-				if (x3Start != 0)								// If all cells in the row that could be possibility i were in the same 3x3, x3Start will not be zero
-				{
-					// Remove possibiltiy i for all cells in this 3x3 that are otside this row
-					for (int y1 = y3Start; y1 < y3Start + 3; y1++)			// For every cell in this 3x3 box 
-					{
-						for (int x1 = x3Start; x1 < x3Start + 3; x1++)
-						{
-							if (y1 != y)											// Excluding the row in question
-							{
-								if (gameState.getPossibility(x1,y1,i))				// Remove this possibilty if set
-								{
-									gameState.clearPossibility(x1,y1,i);
-									total ++;
-								}
-							}
-						}
-					}
-				}
-			}
+			total += hiddenSetsHouse(houses.house3x3 + box, nRange);
 		}
-
 		return total;
 	}
 
 	/***********************************************************************
-	* columnIn3x3()
+	* hiddenSetsHouse()
 	* 
-	* Possibility Updates -  Remove by Column in 3x3
+	* Possibility Updates -  hidden n sets of n, for one row/column/3x3
 	* 
-	* For every column
-	* If 3 or less cells in a column can be value n and they are in the same 3x3, then no other cell in that 3x3 ouside the column can be n. Remove it
+	* The same search as nSetsHouse(), turned around: take the position mask of each value that can still go in
+	* 2 or more cells of the house (from the gameState house positions), and find every n values whose positions
+	* cover only n cells between them (see nextSet()). Those cells must hold those values. Remove every other possibility
 	*  		Return number of possibilities removed.
 	***********************************************************************/
-	int columnIn3x3()
+	int hiddenSetsHouse(int house, int nRange)
 	{
 		int total = 0;
-		int x3Start;
-		int y3Start;
+		int count;
+		int removed;
+		int values;
 
-		for (int i = 1; i < 9; i++)			// For each possibility
+		count = readValueMasks(house);
+
+		for (int n = 2; n < count-1; n++)
 		{
-			for (int x = 1; x <= 9; x++)		// For each column
-			{
-				x3Start = (((x-1)/3)*3)+1;		// Calculate c coordinate of the 3x3s it intersects
-				y3Start = 0;
+			if (nRange != 0 && nRange != n)		// If the nRange setting does not allow this n number
+				continue;
 
-				for (int y = 1; y <= 9; y++)		// For each cell in this column
+			firstSet();
+			while (nextSet(count, n, 0))
+			{
+				values = 0;
+				for (int members = nSetMembers; members != 0; members &= members-1)
 				{
-					if (gameState.getPossibility(x,y,i))		// If it can be this possibility
-					{
-						if (y3Start == 0)						// If this is the first matching cell, record the 3x3 box y coord. Wth c coord of row we now have both
-							y3Start = (((y-1)/3)*3)+1;
-						else if (y3Start != (((y-1)/3)*3)+1)	// If this is the second matching cell, is it in the same 3x3? If not, stop here and set no matches
-						{
-							y3Start = 0;
-							break;
-						}
-					}
+					values |= 1 << (nSetItems[Integer.numberOfTrailingZeros(members)] - 1);
 				}
 
-				if (y3Start != 0)								// If all cells in the column that could be possibility i were in the same 3x3, x3Start will not be zero
+				removed = 0;
+				for (int positions = nSetFound; positions != 0; positions &= positions-1)	// Every cell of the set
 				{
-					// Remove possibiltiy i for all cells in this 3x3 that are otside this column
-					for (int y1 = y3Start; y1 < y3Start + 3; y1++)			// For every cell in this 3x3 box 
-					{
-						for (int x1 = x3Start; x1 < x3Start + 3; x1++)
-						{
-							if (x1 != x)											// Excluding the column in question
-							{
-								if (gameState.getPossibility(x1,y1,i))				// Remove this possibilty if set
-								{
-									gameState.clearPossibility(x1,y1,i);
-									total ++;
-								}
-							}
-						}
-					}
+					removed += clearPossibilities(houses.houseCells[house][Integer.numberOfTrailingZeros(positions)],
+													houses.allPossibilities & ~values);
+				}
+				if (removed > 0)
+				{
+					total += removed;
+					count = readValueMasks(house);
+					firstSet();							// The values counted may have changed, start this n again
 				}
 			}
 		}
-
 		return total;
 	}
 
 	/***********************************************************************
-	* x3InRow()
-	* 
-	* Possibility Updates -  Remove by 3x3 In Row
+	* readCellMasks() / readValueMasks()
 	* 
-	* For every 3x3
-	* If 3 or less cells in a 3x3 can be value n and they are in the same row, then no other cell in that row ouside the 3x3 can be n. Remove it
+	* Possibility Updates -  n sets of n, fill nSetMasks for nextSet()
+	* For naked sets, the possibility masks of the cells in nSetItems
+	* For hidden sets, the values that can be in 2 or more cells of the house (into nSetItems) and their position masks
+	* 		readValueMasks() returns the number of values
+	***********************************************************************/
+	private void readCellMasks(int count)
+	{
+		for (int i = 0; i < count; i++)
+		{
+			nSetMasks[i] = gameState.getPossibilityMask(nSetItems[i]);
+		}
+	}
+	private int readValueMasks(int house)
+	{
+		int count = 0;
+
+		for (int value = 1; value <= houses.size; value++)
+		{
+			if (gameState.getHouseCount(house, value) >= 2)
+			{
+				nSetItems[count] = value;
+				nSetMasks[count++] = gameState.getHousePositions(house, value);
+			}
+		}
+		return count;
+	}
+
+	/***********************************************************************
+	* firstSet() / nextSet()
+	* 
+	* Possibility Updates -  n sets of n, search
+	* 
+	* Step through the combinations of n of the masks nSetMasks[0 to count-1], OR-ing them together as each is added
+	* A combination is abandoned as soon as its masks hold more than n + spare bits, so few combinations are tried
+	* nextSet() returns true for each combination with n to n + spare bits between them (spare is 0 for n sets of n):
+	* nSetMembers is a mask of the indexes in the combination, nSetFound the bits they hold
+	* firstSet() starts again from the first combination
+	***********************************************************************/
+	private void firstSet()
+	{
+		nSetDepth = 0;
+		nSetIndex[0] = 0;
+		nSetUnion[0] = 0;
+	}
+	private boolean nextSet(int count, int n, int spare)
+	{
+		int union;
+
+		// nSetIndex[0 to nSetDepth] is the combination being built, nSetUnion[d] the bits of its first d masks
+		while (nSetDepth >= 0)
+		{
+			if (nSetIndex[nSetDepth] > count - (n - nSetDepth))		// Not enough masks left to finish the set, go back a level
+			{
+				if (--nSetDepth >= 0)
+					nSetIndex[nSetDepth]++;
+				continue;
+			}
+			union = nSetUnion[nSetDepth] | nSetMasks[nSetIndex[nSetDepth]];
+			if (Integer.bitCount(union) > n + spare)				// Too many bits already, try the next mask here
+			{
+				nSetIndex[nSetDepth]++;
+				continue;
+			}
+			if (nSetDepth < n-1)									// Add another mask
+			{
+				nSetUnion[nSetDepth+1] = union;
+				nSetIndex[nSetDepth+1] = nSetIndex[nSetDepth] + 1;
+				nSetDepth++;
+				continue;
+			}
+
+			nSetIndex[nSetDepth]++;									// The next call carries on from the next combination
+			if (Integer.bitCount(union) >= n)
+			{
+				nSetMembers = 0;
+				for (int d = 0; d < n-1; d++)
+				{
+					nSetMembers |= 1 << nSetIndex[d];
+				}
+				nSetMembers |= 1 << (nSetIndex[n-1] - 1);
+				nSetFound = union;
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/***********************************************************************
+	* fish()
+	* 
+	* Possibility Updates -  fish of n rows/columns (X-Wing n = 2, Swordfish n = 3, Jellyfish n = 4)
+	* 
+	* For every value, with base lines of rows and cover lines of columns, then the other way around
+	* 	If the cells of n base lines that can be the value are all in the same n cover lines, then each cover line
+	* 	has the value in one of the base lines. No other cell in the cover lines can be the value. Remove it
 	*  		Return number of possibilities removed.
 	***********************************************************************/
-	int x3InRow()
+	int fish(int n)
 	{
 		int total = 0;
-		int coordY;
 
-		for (int i = 1; i < 9; i++)			// For each possibility
+		for (int value = 1; value <= houses.size; value++)
 		{
+			total += fishValue(SudokuHouses.ROW, value, n, false);
+			total += fishValue(SudokuHouses.COLUMN, value, n, false);
+		}
+		return total;
+	}
 
-			for (int y1 = 1; y1 <= 9; y1+=3)					// For every 3x3 box (top left coord)
+	/***********************************************************************
+	* finnedFish()
+	* 
+	* Possibility Updates -  finned fish of n rows/columns
+	* 
+	* For every value, with base lines of rows and cover lines of columns, then the other way around
+	* 	If the cells of n base lines that can be the value are all in the same n cover lines, except for
+	* 	some (the fins) in a single 3x3, then either a fin is the value or the fish holds
+	* 	Cells in the cover lines, in the 3x3 of the fins and outside the base lines, cannot be the value. Remove it
+	*  		Return number of possibilities removed.
+	***********************************************************************/
+	int finnedFish(int n)
+	{
+		int total = 0;
+
+		for (int value = 1; value <= houses.size; value++)
+		{
+			total += fishValue(SudokuHouses.ROW, value, n, true);
+			total += fishValue(SudokuHouses.COLUMN, value, n, true);
+		}
+		return total;
+	}
+
+	/***********************************************************************
+	* fishValue()
+	* 
+	* Possibility Updates -  fish of n lines of type ROW or COLUMN, for one value
+	* 
+	* The positions of the value in each line (from the gameState house positions) are a mask of the cover lines
+	* it reaches, so base lines are chosen by nextSet(), the same search as n sets of n: n lines reaching
+	* exactly n cover lines are a fish, finned fish may reach as many more as there are cells across a 3x3
+	*  		Return number of possibilities removed.
+	***********************************************************************/
+	private int fishValue(int type, int value, int n, boolean finned)
+	{
+		int total = 0;
+		int count;
+		int removed;
+		int lines;
+		int spare = finned ? Integer.bitCount(houses.lineSegments[type][0]) : 0;	// 3x3 cells across a base line
+
+		count = readLineMasks(type, value);
+
+		firstSet();
+		while (nextSet(count, n, spare))
+		{
+			lines = 0;
+			for (int members = nSetMembers; members != 0; members &= members-1)
+			{
+				lines |= 1 << nSetItems[Integer.numberOfTrailingZeros(members)];
+			}
+
+			if (Integer.bitCount(nSetFound) == n)
+				removed = finned ? 0 : fishClear(1 - type, value, nSetFound, ~lines);
+			else
+				removed = finnedClear(type, value, n, lines);
+			if (removed > 0)
+			{
+				total += removed;
+				count = readLineMasks(type, value);
+				firstSet();							// The lines counted may have changed, start again
+			}
+		}
+		return total;
+	}
+
+	/***********************************************************************
+	* finnedClear()
+	* 
+	* Possibility Updates -  finned fish, for the base lines found by nextSet()
+	* 
+	* For each 3x3 on the base lines, take that 3x3 as the one holding the fins: the positions of the base lines
+	* outside it must then reach exactly n cover lines. If they do, clear the value from the cells of those
+	* cover lines that are in the 3x3 and outside the base lines
+	*  		Return number of possibilities removed.
+	***********************************************************************/
+	private int finnedClear(int type, int value, int n, int lines)
+	{
+		int total = 0;
+		int band;
+		int bands = 0;
+		int segment;
+		int core;
+		int item;
+
+		for (int remaining = lines; remaining != 0; remaining &= remaining-1)
+		{
+			band = houses.lineSegments[1 - type][Integer.numberOfTrailingZeros(remaining)];	// Lines through the same 3x3s
+			if ((bands & band) != 0)
+				continue;
+			bands |= band;
+
+			for (int position = 0; position < houses.size; position += Integer.bitCount(segment))
 			{
-				for (int x1 = 1; x1 <= 9; x1+=3)
+				segment = houses.lineSegments[type][position];		// Positions of the base lines in this 3x3
+				core = 0;
+				for (int members = nSetMembers; members != 0; members &= members-1)
 				{
-					coordY = 0;
-					loopWithin3x3:
-					for (int y = y1; y < y1+3; y++)				// For every cell in this 3x3
-					{
-						for (int x = x1; x < x1+3; x++)
-						{
-							if (gameState.getPossibility(x,y,i))		// If it can be this possibility
-							{
-								if (coordY == 0)						// If this is the first matching cell, record the row
-									coordY = y;
-								else if (coordY != y)					// If this is the second matching cell, is it in the same row? If not, stop here and set no matches
-								{
-									coordY = 0;
-									break loopWithin3x3;
-								}
-							}
-						}
-					}
+					item = Integer.numberOfTrailingZeros(members);
+					if ((band & (1 << nSetItems[item])) != 0)
+						core |= nSetMasks[item] & ~segment;
+					else
+						core |= nSetMasks[item];
+				}
+				if (Integer.bitCount(core) == n)
+					total += fishClear(1 - type, value, core & segment, band & ~lines);
+			}
+		}
+		return total;
+	}
+
+	/***********************************************************************
+	* fishClear()
+	* 
+	* Possibility Updates -  fish, clear the value from the cover lines of type coverType in the mask cover,
+	* at the positions in the mask positions (positions along a cover line are base line numbers)
+	*  		Return number of possibilities removed.
+	***********************************************************************/
+	private int fishClear(int coverType, int value, int cover, int positions)
+	{
+		int total = 0;
+		int house;
+
+		for (; cover != 0; cover &= cover-1)
+		{
+			house = lineHouse(coverType, Integer.numberOfTrailingZeros(cover));
+			for (int remove = gameState.getHousePositions(house, value) & positions; remove != 0; remove &= remove-1)
+			{
+				gameState.clearPossibility(houses.houseCells[house][Integer.numberOfTrailingZeros(remove)], value);
+				total++;
+			}
+		}
+		return total;
+	}
+
+	/***********************************************************************
+	* readLineMasks()
+	* 
+	* Possibility Updates -  fish, fill nSetMasks for nextSet()
+	* The rows/columns (into nSetItems) where the value can be in 2 or more cells, and their position masks
+	* 		Return the number of lines
+	***********************************************************************/
+	private int readLineMasks(int type, int value)
+	{
+		int count = 0;
+		int house;
+
+		for (int line = 0; line < houses.size; line++)
+		{
+			house = lineHouse(type, line);
+			if (gameState.getHouseCount(house, value) >= 2)
+			{
+				nSetItems[count] = line;
+				nSetMasks[count++] = gameState.getHousePositions(house, value);
+			}
+		}
+		return count;
+	}
 
-					if (coordY != 0)								// If all cells in the 3x3 that could be possibility i were in the same row, coordY will not be zero
+	/***********************************************************************
+	* lineHouse()
+	* 
+	* Get the house of a row or column, by type (ROW or COLUMN) and number (0 to size-1)
+	***********************************************************************/
+	private int lineHouse(int type, int line)
+	{
+		return (type == SudokuHouses.ROW ? SudokuHouses.HOUSE_ROW : houses.houseColumn) + line;
+	}
+
+	/***********************************************************************
+	* xyWing()
+	* 
+	* Possibility Updates -  XY-Wing
+	* 
+	* For every bivalue cell (the pivot, possibilities xy), and every pair of bivalue peers of it (the pincers) with possibilities xz and yz
+	* 	Whichever of x or y the pivot is, one of the pincers must be z
+	* 	No cell that is a peer of both pincers can be z. Remove it
+	*  		Return number of possibilities removed.
+	***********************************************************************/
+	int xyWing()
+	{
+		int total = 0;
+		int pivot;
+		int mask;
+		int maskA;
+		int z;
+
+		for (int i = 0; i < gameState.getBivalueCount(); i++)
+		{
+			pivot = gameState.getBivalueCell(i);
+			mask = gameState.getPossibilityMask(pivot);
+			for (int a : houses.peers[pivot])
+			{
+				maskA = gameState.getPossibilityMask(a);
+				if (!gameState.isBivalue(a) || Integer.bitCount(maskA & mask) != 1)
+					continue;
+				z = maskA & ~mask;
+				for (int b : houses.peers[pivot])
+				{
+					if (gameState.getPossibilityMask(b) == ((mask & ~maskA) | z) && gameState.isBivalue(b))
+						total += wingClear(a, b, -1, z);
+				}
+			}
+		}
+		return total;
+	}
+
+	/***********************************************************************
+	* xyzWing()
+	* 
+	* Possibility Updates -  XYZ-Wing
+	* 
+	* For every cell with 3 possibilities xyz (the pivot) that is a peer of two bivalue cells (the pincers) with possibilities xz and yz
+	* 	Whichever of x, y or z the pivot is, one of the three cells must be z
+	* 	No cell that is a peer of all three can be z. Remove it
+	* The pivots are found from the peers of the bivalue cells, not by looking at every cell
+	*  		Return number of possibilities removed.
+	***********************************************************************/
+	int xyzWing()
+	{
+		int total = 0;
+		int a;
+		int maskA;
+		int mask;
+
+		for (int i = 0; i < gameState.getBivalueCount(); i++)
+		{
+			a = gameState.getBivalueCell(i);
+			maskA = gameState.getPossibilityMask(a);
+			for (int pivot : houses.peers[a])
+			{
+				mask = gameState.getPossibilityMask(pivot);
+				if (gameState.getValue(pivot) != 0 || Integer.bitCount(mask) != 3 || (mask & maskA) != maskA)
+					continue;
+				for (int b : houses.peers[pivot])
+				{
+					// Other pincer holds z (the value the pincers share) and the pivot value a does not have
+					if (b > a && gameState.isBivalue(b) && (gameState.getPossibilityMask(b) & mask) == gameState.getPossibilityMask(b)
+							&& Integer.bitCount(gameState.getPossibilityMask(b) & maskA) == 1)
+						total += wingClear(a, b, pivot, gameState.getPossibilityMask(b) & maskA);
+				}
+			}
+		}
+		return total;
+	}
+
+	/***********************************************************************
+	* wWing()
+	* 
+	* Possibility Updates -  W-Wing
+	* 
+	* For every two bivalue cells with the same possibilities xy that are not peers
+	* 	If a row/column/3x3 has only two cells that can be x, one a peer of each of them,
+	* 	then one of those two cells is x, so one of the bivalue cells is not x and must be y
+	* 	No cell that is a peer of both bivalue cells can be y. Remove it
+	*  		Return number of possibilities removed.
+	***********************************************************************/
+	int wWing()
+	{
+		int total = 0;
+		int a;
+		int b;
+		int mask;
+		int x;
+		int ends;
+		int endA;
+		int endB;
+
+		for (int i = 0; i < gameState.getBivalueCount(); i++)
+		{
+			a = gameState.getBivalueCell(i);
+			mask = gameState.getPossibilityMask(a);
+			for (int j = i+1; j < gameState.getBivalueCount(); j++)
+			{
+				b = gameState.getBivalueCell(j);
+				if (gameState.getPossibilityMask(b) != mask || houses.isPeer(a, b))
+					continue;
+				for (int values = mask; values != 0; values &= values-1)		// Each of the two values as x
+				{
+					x = Integer.numberOfTrailingZeros(values) + 1;
+					for (int house = 0; house < houses.houses; house++)
 					{
-						// Remove possibiltiy i for all cells in this row that are otside this 3x3
-						for (int x = 1; x <= 9; x++)				// For every cell in this row
+						if (gameState.getHouseCount(house, x) != 2)
+							continue;
+						ends = gameState.getHousePositions(house, x);
+						endA = houses.houseCells[house][Integer.numberOfTrailingZeros(ends)];
+						endB = houses.houseCells[house][31 - Integer.numberOfLeadingZeros(ends)];
+						if (endA == a || endA == b || endB == a || endB == b)
+							continue;
+						if ((houses.isPeer(endA, a) && houses.isPeer(endB, b)) || (houses.isPeer(endA, b) && houses.isPeer(endB, a)))
 						{
-							if (x < x1 || x >= x1+3)				// Excluding those that intersect the 3x3 in question
-							{
-								if (gameState.getPossibility(x,coordY,i))				// Remove this possibilty if set
-								{
-									gameState.clearPossibility(x,coordY,i);
-									total ++;
-								}
-							}
+							total += wingClear(a, b, -1, mask & ~(1 << (x-1)));
+							break;
 						}
 					}
 				}
@@ -855,6 +1059,138 @@ public class SudokuSolutions
 		return total;
 	}
 
+	/***********************************************************************
+	* wingClear()
+	* 
+	* Possibility Updates -  wings, clear the values in mask from every cell without a value that is a peer of
+	* cells a and b, and of cell c (-1 if none)
+	*  		Return number of possibilities removed.
+	***********************************************************************/
+	private int wingClear(int a, int b, int c, int mask)
+	{
+		int total = 0;
+
+		for (int cell : houses.peers[a])
+		{
+			if (gameState.getValue(cell) == 0 && houses.isPeer(cell, b) && (c < 0 || houses.isPeer(cell, c)))
+				total += clearPossibilities(cell, mask);
+		}
+		return total;
+	}
+
+	/***********************************************************************
+	* clearPossibilities()
+	* 
+	* Remove every possibility in a mask from a cell
+	*  		Return number of possibilities removed.
+	***********************************************************************/
+	int clearPossibilities(int cell, int mask)
+	{
+		int total = 0;
+
+		for (int remove = gameState.getPossibilityMask(cell) & mask; remove != 0; remove &= remove-1)
+		{
+			gameState.clearPossibility(cell, Integer.numberOfTrailingZeros(remove) + 1);
+			total++;
+		}
+		return total;
+	}
+
+	/***********************************************************************
+	* rowIn3x3()
+	* 
+	* Possibility Updates -  Remove by Row in 3x3
+	* 
+	* For every row
+	* If 3 or less cells in a row can be value n and they are in the same 3x3, then no other cell in that 3x3 ouside the row can be n. Remove it
+	*  		Return number of possibilities removed.
+	***********************************************************************/
+	int rowIn3x3()
+	{
+		int total = 0;
+
+		for (int i = 1; i <= houses.size; i++)	// For each possibility
+		{
+			for (int y = 1; y <= houses.size; y++)	// For each row
+			{
+				total += lineIn3x3(SudokuHouses.HOUSE_ROW + y-1, i);
+			}
+		}
+
+		return total;
+	}
+
+	/***********************************************************************
+	* columnIn3x3()
+	* 
+	* Possibility Updates -  Remove by Column in 3x3
+	* 
+	* For every column
+	* If 3 or less cells in a column can be value n and they are in the same 3x3, then no other cell in that 3x3 ouside the column can be n. Remove it
+	*  		Return number of possibilities removed.
+	***********************************************************************/
+	int columnIn3x3()
+	{
+		int total = 0;
+
+		for (int i = 1; i <= houses.size; i++)	// For each possibility
+		{
+			for (int x = 1; x <= houses.size; x++)	// For each column
+			{
+				total += lineIn3x3(houses.houseColumn + x-1, i);
+			}
+		}
+
+		return total;
+	}
+
+	/***********************************************************************
+	* lineIn3x3()
+	* 
+	* Possibility Updates -  Remove by Row/Column in 3x3, for one row or column and value
+	* 
+	* Row and column positions run 0-8, so the positions in the same 3x3 are 0-2, 3-5 or 6-8
+	* (other grid sizes use the SudokuHouses lineSegments masks)
+	* If all cells in the line that can be the value are in the same 3x3, then no other cell in that 3x3 outside the line can be the value
+	*  		Return number of possibilities removed.
+	***********************************************************************/
+	int lineIn3x3(int line, int value)
+	{
+		int positions = gameState.getHousePositions(line, value);
+		int first;
+
+		if (positions == 0)
+			return 0;
+		first = Integer.numberOfTrailingZeros(positions);
+		if ((positions & ~houses.lineSegments[houses.houseType(line)][first]) != 0)	// If not all in the same 3x3 as the first, nothing to remove
+			return 0;
+
+		return clearOutside(houses.cellHouses[houses.houseCells[line][first]][SudokuHouses.BOX], line, value);
+	}
+
+	/***********************************************************************
+	* x3InRow()
+	* 
+	* Possibility Updates -  Remove by 3x3 In Row
+	* 
+	* For every 3x3
+	* If 3 or less cells in a 3x3 can be value n and they are in the same row, then no other cell in that row ouside the 3x3 can be n. Remove it
+	*  		Return number of possibilities removed.
+	***********************************************************************/
+	int x3InRow()
+	{
+		int total = 0;
+
+		for (int i = 1; i <= houses.size; i++)	// For each possibility
+		{
+			for (int box = 0; box < houses.size; box++)	// For every 3x3 box
+			{
+				total += x3InLine(houses.house3x3 + box, SudokuHouses.ROW, i);
+			}
+		}
+		return total;
+	}
+
 	/***********************************************************************
 	* x3InColumn()
 	* 
@@ -867,50 +1203,59 @@ public class SudokuSolutions
 	int x3InColumn()
 	{
 		int total = 0;
-		int coordX;
 
-		for (int i = 1; i < 9; i++)			// For each possibility
+		for (int i = 1; i <= houses.size; i++)	// For each possibility
 		{
-
-			for (int y1 = 1; y1 <= 9; y1+=3)					// For every 3x3 box (top left coord)
+			for (int box = 0; box < houses.size; box++)	// For every 3x3 box
 			{
-				for (int x1 = 1; x1 <= 9; x1+=3)
-				{
-					coordX = 0;
-					loopWithin3x3:
-					for (int y = y1; y < y1+3; y++)				// For every cell in this 3x3
-					{
-						for (int x = x1; x < x1+3; x++)
-						{
-							if (gameState.getPossibility(x,y,i))		// If it can be this possibility
-							{
-								if (coordX == 0)						// If this is the first matching cell, record the column
-									coordX = x;
-								else if (coordX != x)					// If this is the second matching cell, is it in the same column? If not, stop here and set no matches
-								{
-									coordX = 0;
-									break loopWithin3x3;
-								}
-							}
-						}
-					}
+				total += x3InLine(houses.house3x3 + box, SudokuHouses.COLUMN, i);
+			}
+		}
+		return total;
+	}
 
-					if (coordX != 0)								// If all cells in the 3x3 that could be possibility i were in the same column, coordY will not be zero
-					{
-						// Remove possibiltiy i for all cells in this column that are otside this 3x3
-						for (int y = 1; y <= 9; y++)				// For every cell in this column
-						{
-							if (y < y1 || y >= y1+3)				// Excluding those that intersect the 3x3 in question
-							{
-								if (gameState.getPossibility(coordX,y,i))				// Remove this possibilty if set
-								{
-									gameState.clearPossibility(coordX,y,i);
-									total ++;
-								}
-							}
-						}
-					}
-				}
+	/***********************************************************************
+	* x3InLine()
+	* 
+	* Possibility Updates -  Remove by 3x3 In Row/Column, for one 3x3 and value
+	* 
+	* 3x3 positions run left to right, top to bottom, so a row of the 3x3 is positions 0-2, 3-5 or 6-8
+	* and a column is positions 0,3,6 (mask 0x49), 1,4,7 or 2,5,8
+	* (other grid sizes use the SudokuHouses boxLines masks)
+	* If all cells in the 3x3 that can be the value are in the same row (lineType ROW) or column (lineType COLUMN),
+	* then no other cell in that row/column outside the 3x3 can be the value
+	*  		Return number of possibilities removed.
+	***********************************************************************/
+	int x3InLine(int box, int lineType, int value)
+	{
+		int positions = gameState.getHousePositions(box, value);
+		int first;
+
+		if (positions == 0)
+			return 0;
+		first = Integer.numberOfTrailingZeros(positions);
+		if ((positions & ~houses.boxLines[lineType][first]) != 0)	// If not all in the same row/column as the first, nothing to remove
+			return 0;
+
+		return clearOutside(houses.cellHouses[houses.houseCells[box][first]][lineType], box, value);
+	}
+
+	/***********************************************************************
+	* clearOutside()
+	* 
+	* Remove a possibility from every cell in a house that is not also in the excluded house
+	*  		Return number of possibilities removed.
+	***********************************************************************/
+	int clearOutside(int house, int excludeHouse, int value)
+	{
+		int total = 0;
+
+		for (int cell : houses.houseCells[house])
+		{
+			if (!houses.inHouse(cell, excludeHouse) && gameState.getPossibility(cell,value))	// Remove this possibilty if set
+			{
+				gameState.clearPossibility(cell,value);
+				total++;
 			}
 		}
 		return total;
@@ -919,72 +1264,287 @@ public class SudokuSolutions
 	/***********************************************************************
 	* solveRecursive()
 	* 
-	* Solve gameState - recursive
+	* Solve gameState - brute force
 	* 
-	* Recurse thourgh all possible combinations until a valid solution is found
+	* Try all possible combinations until a valid solution is found
+	* Each level branches on the cell with the fewest possibilities left (see chooseCell()),
+	* so forced cells are filled first and guesses are made where they are least likely to be wrong
+	* Every guess is propagated to a fixpoint (see propagate()), and abandoned as soon as it leaves
+	* a cell or row/column/3x3 with no possibility for a value
+	* The search runs on a single working copy of the gameState, with an explicit stack of guesses (see SudokuSearch)
+	* Each guess is undone using the working copy's trail, so no new gameState is created per guess
+	* Can be called with a specific engine: ENGINE_RECURSIVE (default), ENGINE_DLX, ENGINE_BITBOARD, ENGINE_PARALLEL,
+	* ENGINE_LOGIC or ENGINE_PORTFOLIO
+	* and a budget. Each guess is a node; if the budget is exhausted the search stops and returns false,
+	* leaving the gameState as it was. The budget then says why, and how far the search got
 	***********************************************************************/
 	boolean solveRecursive()
 	{
-		int cellList[][] = new int[81][2];
-		int maxID = 0;
+		return solveRecursive(ENGINE_RECURSIVE);
+	}
+	boolean solveRecursive(int engine)
+	{
+		return solveRecursive(engine, new SudokuBudget());
+	}
+	boolean solveRecursive(int engine, SudokuBudget budget)
+	{
+		int[] values = new int[houses.cells];
 
 		updatePossibilities();			//Ensure possibility grid is trimmed
+		if (gameState.getRemainingValues() == 0)
+			return false;
 
-		// Build 2d array list of cells with no value, (where [i][0] is x and [i][1] is y), for easlier looping by recursive function
-		for (int y = 1; y <= 9; y++)	// For each cell in this column
+		if (findSolution(engine, values, budget))
 		{
-			for (int x = 1; x <= 9; x++)		// For each column
+			// Copy the solved values into the gameState, so they are flagged as changed
+			for (int cell = 0; cell < houses.cells; cell++)
 			{
-				if (gameState.getValue(x,y) == 0)
-				{
-					cellList[maxID][0] = x;
-					cellList[maxID++][1] = y;
-				}
+				if (gameState.getValue(cell) == 0)
+					gameState.setValue(cell,values[cell],false);
 			}
-		}
+			updatePossibilities();
 
-		if (maxID != 0 && solveRecursive(0, maxID-1,cellList, gameState))
-		{
 			System.out.println("Success!");
-			System.out.println(recursiveSolvedState.valueStateToString());			
-			gameState.copyFrom(recursiveSolvedState);
+			System.out.println(gameState.valueStateToString());
 			return true;
 		}
 		return false;
 	}
-	boolean solveRecursive(int cellID, int maxID, int cellList[][], SudokuGameState currentState)
+
+	/***********************************************************************
+	* findSolution()
+	* 
+	* Find a solution of gameState with the specified engine, within the budget, without changing gameState
+	* If found, return true and put the value of every cell in values
+	***********************************************************************/
+	boolean findSolution(int engine, int[] values, SudokuBudget budget)
+	{
+		SudokuGameState workState;
+		SudokuSearch search;
+		boolean solved;
+
+		if (engine == ENGINE_DLX)
+		{
+			if (dlx == null)
+				dlx = new SudokuDLX(houses);
+			solved = dlx.solve(gameState, values, budget);
+		}
+		else if (engine == ENGINE_BITBOARD)
+		{
+			if (bitboard == null)
+				bitboard = new SudokuBitboard();
+			solved = bitboard.solve(gameState, values, budget);
+		}
+		else if (engine == ENGINE_PARALLEL)
+		{
+			solved = SudokuParallel.solve(gameState, values, budget);
+		}
+		else if (engine == ENGINE_PORTFOLIO)
+		{
+			if (portfolio == null)
+				portfolio = new SudokuPortfolio();
+			solved = portfolio.solve(gameState, values, budget);
+		}
+		else
+		{
+			workState = gameState;
+			if (engine == ENGINE_LOGIC)
+			{
+				workState = gameState.cloneState();
+				new SudokuSolutions(workState, null).solve(budget);
+			}
+			search = new SudokuSearch(workState, 1, budget);
+			solved = search.hasNext();
+			if (solved)
+				System.arraycopy(search.next(), 0, values, 0, houses.cells);
+		}
+		return solved;
+	}
+
+	/***********************************************************************
+	* getPortfolio()
+	* 
+	* Get the portfolio used by ENGINE_PORTFOLIO, to see which engine won. Null if it has not been used
+	***********************************************************************/
+	SudokuPortfolio getPortfolio()
+	{
+		return portfolio;
+	}
+
+	/***********************************************************************
+	* countSolutions()
+	* 
+	* Count the solutions of gameState, stopping once limit solutions are found
+	* (limit 2 tells whether the puzzle has no solution, one solution, or more than one)
+	* Searches like solveRecursive(), carrying on after a solution is found (see SudokuSearch). The gameState is not changed
+	* With a budget, if it is exhausted the count so far is returned, and the budget says the search stopped early
+	***********************************************************************/
+	int countSolutions(int limit)
+	{
+		return countSolutions(limit, new SudokuBudget());
+	}
+	int countSolutions(int limit, SudokuBudget budget)
+	{
+		SudokuSearch search = new SudokuSearch(gameState, limit, budget);
+		int count = 0;
+
+		while (count < limit && search.nextSolution())
+		{
+			count++;
+		}
+		return count;
+	}
+
+	/***********************************************************************
+	* solutionIterator()
+	* 
+	* Get an Iterator over the solutions of gameState, found one at a time as they are asked for (see SudokuSearch)
+	* With a limit, stop after that many solutions, and with a budget, stop when it is exhausted. The gameState is not changed
+	***********************************************************************/
+	Iterator<int[]> solutionIterator()
+	{
+		return new SudokuSearch(gameState);
+	}
+	Iterator<int[]> solutionIterator(int limit)
 	{
-		//Duplicate the GameState for this iteration
-		SudokuGameState newState;
+		return new SudokuSearch(gameState, limit);
+	}
+	Iterator<int[]> solutionIterator(int limit, SudokuBudget budget)
+	{
+		return new SudokuSearch(gameState, limit, budget);
+	}
 
-		// Try every available possibility for this cell
-		for (int i = 1; i <= 9; i++)
+	/***********************************************************************
+	* propagate()
+	* 
+	* Propagate a value just set in a cell, until nothing more follows from it:
+	* 	Remove the value as a possibility from every peer (Remove by Value)
+	* 	A peer left with one possibility is set to it (Single Possibility)
+	* 	A row/column/3x3 with only one cell left that can be a value has that cell set to it (Single In Row/Column/3x3)
+	* 	Every value set this way is propagated in turn
+	* Returns false as soon as the state is found to be invalid - a cell with no possibilities,
+	* a row/column/3x3 where no cell can be a value, or two peers with the same value
+	***********************************************************************/
+	boolean propagate(SudokuGameState currentState, int cell)
+	{
+		SudokuHouses cellHouses = currentState.getHouses();
+		int head = 0;
+		int tail = 0;
+		int current;
+		int value;
+
+		if (propagateQueue.length < cellHouses.cells)
+			propagateQueue = new int[cellHouses.cells];
+		propagateQueue[tail++] = cell;
+
+		while (head < tail)
 		{
-			if (currentState.getPossibility(cellList[cellID][0],cellList[cellID][1],i))
+			current = propagateQueue[head++];
+			value = currentState.getValue(current);
+
+			// Setting the value removed the cell's other possibilities, check its houses for every value
+			for (int house : cellHouses.cellHouses[current])
 			{
-				newState = currentState.cloneState();									// Start with a fresh gameState
-				newState.setValue(cellList[cellID][0],cellList[cellID][1],i,false);		// Set this cell value
-				updatePossibilities(newState,cellList[cellID][0],cellList[cellID][1]);	// Update surrounding possibilities accordingly (reduces number of future possibles so massively reduces iterations required)
+				for (int i = 1; i <= cellHouses.size; i++)
+				{
+					tail = propagateHouse(currentState, house, i, tail);
+					if (tail < 0)
+						return false;
+				}
+			}
 
-				// If this is the last cell, validate the grid, Return true if valid
-				if (cellID == maxID)
+			// Remove the value from every peer
+			for (int peer : cellHouses.peers[current])
+			{
+				if (currentState.getPossibility(peer,value))
 				{
-					if (newState.validate())		// is it valid? Return accordingly
+					if (currentState.getValue(peer) != 0)		// Peer already has this value
+						return false;
+					currentState.clearPossibility(peer,value);
+					if (currentState.getPossibilityCount(peer) == 0)
+						return false;
+					if (currentState.getPossibilityCount(peer) == 1)	// Single possibility, set it
 					{
-						recursiveSolvedState = newState;
-						return true;
+						currentState.setValue(peer,currentState.getLowestPossibility(peer),false);
+						propagateQueue[tail++] = peer;
+					}
+					for (int house : cellHouses.cellHouses[peer])	// Check the peer's houses for the value removed
+					{
+						tail = propagateHouse(currentState, house, value, tail);
+						if (tail < 0)
+							return false;
 					}
 				}
+			}
+		}
+		return true;
+	}
+
+	/***********************************************************************
+	* propagateHouse()
+	* 
+	* Check one house and value for propagate(). If only one cell can be the value and it has no value yet,
+	* set it and add it to the queue. Returns the new queue tail, or -1 if no cell can be the value
+	***********************************************************************/
+	private int propagateHouse(SudokuGameState currentState, int house, int value, int tail)
+	{
+		int count = currentState.getHouseCount(house,value);
+		int cell;
+
+		if (count == 0)
+			return -1;
+		if (count == 1)
+		{
+			cell = currentState.getHouses().houseCells[house][Integer.numberOfTrailingZeros(currentState.getHousePositions(house,value))];
+			if (currentState.getValue(cell) == 0)
+			{
+				currentState.setValue(cell,value,false);
+				propagateQueue[tail++] = cell;
+			}
+		}
+		return tail;
+	}
 
-				// This is not the last cell. Recursively try the next cell ,Return true if successful
-				else
+	/***********************************************************************
+	* chooseCell()
+	* 
+	* Choose the cell to branch on next - the cell without a value that has the fewest possibilities
+	* Ties go to the cell with the fewest peers still without a value, the cell most constrained by its row/column/3x3
+	* Returns -1 if every cell has a value
+	***********************************************************************/
+	int chooseCell(SudokuGameState currentState)
+	{
+		SudokuHouses cellHouses = currentState.getHouses();
+		int best = -1;
+		int bestCount = Integer.MAX_VALUE;
+		int bestOpenPeers = Integer.MAX_VALUE;
+		int count;
+		int openPeers;
+
+		for (int cell = 0; cell < cellHouses.cells; cell++)
+		{
+			if (currentState.getValue(cell) == 0)
+			{
+				count = currentState.getPossibilityCount(cell);
+				if (count <= 1)							// Forced or impossible, no better choice
+					return cell;
+				if (count <= bestCount)
 				{
-					if (solveRecursive(cellID+1, maxID, cellList, newState))
-						return true;
+					openPeers = 0;
+					for (int peer : cellHouses.peers[cell])
+					{
+						if (currentState.getValue(peer) == 0)
+							openPeers++;
+					}
+					if (count < bestCount || openPeers < bestOpenPeers)
+					{
+						best = cell;
+						bestCount = count;
+						bestOpenPeers = openPeers;
+					}
 				}
-
 			}
 		}
-		return false;
+		return best;
 	}
 }
@@ -85,6 +85,8 @@ class SudokuSolverUI implements ItemListener, ActionListener
 
 	private JCheckBox[] highlightCheck = new JCheckBox[9];
 	private JComboBox nSetsListBox;
+	private JComboBox engineListBox;
+	private JComboBox fishListBox;
 	//JComboBox<String> nSetsListBox;	// Prevents "Note: SudokuSolver.java uses unchecked or unsafe operations." "Note: Recompile with -Xlint:unchecked for details." compile warnings, not supported in 1.6
 
 	private static final int B_LOAD			= 0;
@@ -110,6 +112,17 @@ class SudokuSolverUI implements ItemListener, ActionListener
 	private static final int B_POSS_N_3X3	= 20;
 	private static final int B_ABOUT		= 21;
 	private static final int B_TEST_1		= 22;
+	private static final int B_UNDO			= 23;
+	private static final int B_REDO			= 24;
+	private static final int B_HIDDEN_ROW	= 25;
+	private static final int B_HIDDEN_COL	= 26;
+	private static final int B_HIDDEN_3X3	= 27;
+	private static final int B_FISH_2		= 28;
+	private static final int B_FISH_3		= 29;
+	private static final int B_FISH_4		= 30;
+	private static final int B_XY_WING		= 31;
+	private static final int B_XYZ_WING		= 32;
+	private static final int B_W_WING		= 33;
 
 	private static final int BS_ID = 0;
 	private static final int BS_TXT = 1;
@@ -171,7 +184,35 @@ class SudokuSolverUI implements ItemListener, ActionListener
 		{"about",			"About",		"B",
 			""},
 		{"test1",			"test 1",		"B",
-			""}
+			""},
+		{"undo",			"Undo",			"R",
+			"Undo the last solution applied"},
+		{"redo",			"Redo",			"R",
+			"Redo the last solution undone"},
+
+// Solutions - possibility updates - hidden n sets of n
+		{"hiddenRow",			"hidden by row",		"R",
+			"<html>If n values can only be in the same n cells of a row, <br>then those cells cannot be any other value</html>"},
+		{"hiddenCol",			"hidden by column",		"R",
+			"<html>If n values can only be in the same n cells of a column, <br>then those cells cannot be any other value</html>"},
+		{"hidden3x3",			"hidden by 3x3",		"R",
+			"<html>If n values can only be in the same n cells of a 3x3, <br>then those cells cannot be any other value</html>"},
+
+// Solutions - possibility updates - fish
+		{"fish2",				"X-Wing",		"R",
+			"<html>If the cells that can be value n in 2 rows are all in the same 2 columns (or the other way around), <br>then no other cell in those columns can be n</html>"},
+		{"fish3",				"Swordfish",	"R",
+			"<html>If the cells that can be value n in 3 rows are all in the same 3 columns (or the other way around), <br>then no other cell in those columns can be n</html>"},
+		{"fish4",				"Jellyfish",	"R",
+			"<html>If the cells that can be value n in 4 rows are all in the same 4 columns (or the other way around), <br>then no other cell in those columns can be n</html>"},
+
+// Solutions - possibility updates - wings
+		{"xyWing",				"XY-Wing",		"R",
+			"<html>If a cell that can be x or y sees a cell that can be x or z and a cell that can be y or z, <br>then no cell that sees both of those can be z</html>"},
+		{"xyzWing",				"XYZ-Wing",		"R",
+			"<html>If a cell that can be x, y or z sees a cell that can be x or z and a cell that can be y or z, <br>then no cell that sees all three can be z</html>"},
+		{"wWing",				"W-Wing",		"R",
+			"<html>If two cells that can be x or y are joined by a row/column/3x3 where only two cells can be x, one seeing each, <br>then no cell that sees both can be y</html>"}
 
 
 	};
@@ -181,6 +222,11 @@ class SudokuSolverUI implements ItemListener, ActionListener
 		{"0","2","3","4","5","6","7"}
 	};
 
+	private static final String fishListStrings[] = {"Basic","Finned"};
+
+	// Brute force engines, in SudokuSolutions.ENGINE_ order
+	private static final String engineListStrings[] = SudokuSolutions.ENGINE_NAMES;
+
 	private JButton[] buttons;
 	private JPanel[] bPanels;
 
@@ -262,6 +308,12 @@ class SudokuSolverUI implements ItemListener, ActionListener
 		controlPanel.add(buildButton(B_CLEAR_L,true));
 		controlPanel.add(buildButton(B_SOLVE,true));
 		controlPanel.add(buildButton(B_SOLVE_REC,true));
+		engineListBox = new JComboBox(engineListStrings);
+		engineListBox.setSelectedIndex(SudokuSolutions.ENGINE_RECURSIVE);
+		engineListBox.setToolTipText("Brute force engine");
+		controlPanel.add(engineListBox);
+		controlPanel.add(buildButton(B_UNDO,true));
+		controlPanel.add(buildButton(B_REDO,true));
 		//controlPanel.add(buildButton(B_TEST_1,true));
 
 
@@ -338,6 +390,9 @@ class SudokuSolverUI implements ItemListener, ActionListener
 				solutionsNSetsPanel.add(buildButton(B_POSS_N_ROW,true));
 				solutionsNSetsPanel.add(buildButton(B_POSS_N_COL,true));
 				solutionsNSetsPanel.add(buildButton(B_POSS_N_3X3,true));
+				solutionsNSetsPanel.add(buildButton(B_HIDDEN_ROW,true));
+				solutionsNSetsPanel.add(buildButton(B_HIDDEN_COL,true));
+				solutionsNSetsPanel.add(buildButton(B_HIDDEN_3X3,true));
 
 				nSetsListBox = new JComboBox(nSetsListStrings[0]);
 				//nSetsListBox = new JComboBox<>(nSetsListStrings[0]);		// Prevents "Note: SudokuSolver.java uses unchecked or unsafe operations." "Note: Recompile with -Xlint:unchecked for details." compile warnings, not supported in 1.6
@@ -349,6 +404,35 @@ class SudokuSolverUI implements ItemListener, ActionListener
 				solutionsNSetsOuterPanel.add(solutionsNSetsPanel);
 				solutionsPossibilityPanel.add(solutionsNSetsOuterPanel);
 
+			//-----------------------------------------
+			// Possibility fish Sub-panel
+				JPanel solutionsFishOuterPanel = new JPanel(new FlowLayout(FlowLayout.LEFT,0,0));
+				JPanel solutionsFishPanel = new JPanel();
+				solutionsFishPanel.setLayout(new BoxLayout(solutionsFishPanel, BoxLayout.Y_AXIS));
+				solutionsFishPanel.setBorder(new TitledBorder("Fish"));
+				solutionsFishPanel.add(buildButton(B_FISH_2,true));
+				solutionsFishPanel.add(buildButton(B_FISH_3,true));
+				solutionsFishPanel.add(buildButton(B_FISH_4,true));
+
+				fishListBox = new JComboBox(fishListStrings);
+				fishListBox.setSelectedIndex(0);
+				solutionsFishPanel.add(fishListBox);
+
+				solutionsFishOuterPanel.add(solutionsFishPanel);
+				solutionsPossibilityPanel.add(solutionsFishOuterPanel);
+
+			//-----------------------------------------
+			// Possibility wings Sub-panel
+				JPanel solutionsWingsOuterPanel = new JPanel(new FlowLayout(FlowLayout.LEFT,0,0));
+				JPanel solutionsWingsPanel = new JPanel();
+				solutionsWingsPanel.setLayout(new BoxLayout(solutionsWingsPanel, BoxLayout.Y_AXIS));
+				solutionsWingsPanel.setBorder(new TitledBorder("Wings"));
+				solutionsWingsPanel.add(buildButton(B_XY_WING,true));
+				solutionsWingsPanel.add(buildButton(B_XYZ_WING,true));
+				solutionsWingsPanel.add(buildButton(B_W_WING,true));
+				solutionsWingsOuterPanel.add(solutionsWingsPanel);
+				solutionsPossibilityPanel.add(solutionsWingsOuterPanel);
+
 			solutionsPanel.add(solutionsPossibilityPanel);
 		solutionsOuterPanel.add(solutionsPanel);
 
@@ -473,7 +557,7 @@ class SudokuSolverUI implements ItemListener, ActionListener
 		else if (bStrings[B_SOLVE][BS_ID].equals(e.getActionCommand()))
 			processing.solve();
 		else if (bStrings[B_SOLVE_REC][BS_ID].equals(e.getActionCommand()))
-			processing.solveRecursive();
+			processing.solveRecursive(engineListBox.getSelectedIndex());
 		else if (bStrings[B_POSS_VAL][BS_ID].equals(e.getActionCommand()))
 			processing.updatePossibilities(true);
 		else if (bStrings[B_SINGLE_P][BS_ID].equals(e.getActionCommand()))
@@ -498,6 +582,24 @@ class SudokuSolverUI implements ItemListener, ActionListener
 			nSetsProcessing(bStrings[B_POSS_N_COL][BS_ID]);
 		else if (bStrings[B_POSS_N_3X3][BS_ID].equals(e.getActionCommand()))
 			nSetsProcessing(bStrings[B_POSS_N_3X3][BS_ID]);
+		else if (bStrings[B_HIDDEN_ROW][BS_ID].equals(e.getActionCommand()))
+			nSetsProcessing(bStrings[B_HIDDEN_ROW][BS_ID]);
+		else if (bStrings[B_HIDDEN_COL][BS_ID].equals(e.getActionCommand()))
+			nSetsProcessing(bStrings[B_HIDDEN_COL][BS_ID]);
+		else if (bStrings[B_HIDDEN_3X3][BS_ID].equals(e.getActionCommand()))
+			nSetsProcessing(bStrings[B_HIDDEN_3X3][BS_ID]);
+		else if (bStrings[B_FISH_2][BS_ID].equals(e.getActionCommand()))
+			processing.fish(2,fishListBox.getSelectedIndex() == 1,true);
+		else if (bStrings[B_FISH_3][BS_ID].equals(e.getActionCommand()))
+			processing.fish(3,fishListBox.getSelectedIndex() == 1,true);
+		else if (bStrings[B_FISH_4][BS_ID].equals(e.getActionCommand()))
+			processing.fish(4,fishListBox.getSelectedIndex() == 1,true);
+		else if (bStrings[B_XY_WING][BS_ID].equals(e.getActionCommand()))
+			processing.xyWing(true);
+		else if (bStrings[B_XYZ_WING][BS_ID].equals(e.getActionCommand()))
+			processing.xyzWing(true);
+		else if (bStrings[B_W_WING][BS_ID].equals(e.getActionCommand()))
+			processing.wWing(true);
 		else if (bStrings[B_POSS_ROW_3][BS_ID].equals(e.getActionCommand()))
 			processing.rowIn3x3(true);
 		else if (bStrings[B_POSS_COL_3][BS_ID].equals(e.getActionCommand()))
@@ -510,6 +612,10 @@ class SudokuSolverUI implements ItemListener, ActionListener
 			about();
 		else if (bStrings[B_TEST_1][BS_ID].equals(e.getActionCommand()))
 			test1();
+		else if (bStrings[B_UNDO][BS_ID].equals(e.getActionCommand()))
+			processing.undo();
+		else if (bStrings[B_REDO][BS_ID].equals(e.getActionCommand()))
+			processing.redo();
 
 		else
 			System.out.println("unassigned action string: " + e.getActionCommand());
@@ -548,7 +654,7 @@ class SudokuSolverUI implements ItemListener, ActionListener
 	/****************************************
 	 * nSetsProcessing()
 	 * 
-	 * Instruct processing class to perform the appropriate n Sets of n processing
+	 * Instruct processing class to perform the appropriate n Sets of n or hidden n Sets of n processing
 	 ***************************************/
 	private void nSetsProcessing(String type)
 	{
@@ -560,13 +666,19 @@ class SudokuSolverUI implements ItemListener, ActionListener
 		else
 			nRange = 0;
 
-		// Call appropriate processor - Row, Col, 3x3
+		// Call appropriate processor - Row, Col, 3x3, hidden Row, Col, 3x3
 		if(type.equals(bStrings[B_POSS_N_ROW][BS_ID]))
 			processing.nSetsRow(nRange,true);
 		else if(type.equals(bStrings[B_POSS_N_COL][BS_ID]))
 			processing.nSetsColumn(nRange,true);
 		else if(type.equals(bStrings[B_POSS_N_3X3][BS_ID]))
 			processing.nSets3x3(nRange,true);
+		else if(type.equals(bStrings[B_HIDDEN_ROW][BS_ID]))
+			processing.hiddenSetsRow(nRange,true);
+		else if(type.equals(bStrings[B_HIDDEN_COL][BS_ID]))
+			processing.hiddenSetsColumn(nRange,true);
+		else if(type.equals(bStrings[B_HIDDEN_3X3][BS_ID]))
+			processing.hiddenSets3x3(nRange,true);
 		
 
 	}
@@ -733,6 +845,8 @@ class SudokuSolverUI implements ItemListener, ActionListener
 		}
 
 		nSetsListBox.setEnabled(!inputModeOn);					// n Sets of n dropdown enabled for not input mode
+		engineListBox.setEnabled(!inputModeOn);					// Brute force engine dropdown enabled for not input mode
+		fishListBox.setEnabled(!inputModeOn);					// Fish dropdown enabled for not input mode
 
 	}
 
@@ -0,0 +1,176 @@
+/*
+ * Sudoku Solver
+ * Author:    Jamie Speed
+ * Date:      2016-09-13
+ * Description:
+ * I wanted to teach myself Java, so I built this.
+ * This is a Sudoku Solving tool. The user can input a Sudoku puzzle and apply various solutions to it to see the results.
+ * It also supports solving the whole puzzle, using logical solutions or brute force recursion.
+ */
+package sudokusolver;
+
+/**
+ *
+ * @author Jamie Speed
+ */
+import java.nio.*;
+import java.util.*;
+
+
+/***********************************************************************
+* class SudokuStateArena
+*
+* Stores many game states of one grid size off the Java heap, for batch runs over large numbers of puzzles
+* Each state is held in a fixed size slot, encoded with SudokuStateCodec (144 bytes for 9x9)
+* Slots are allocated in direct ByteBuffer chunks as they are needed, so the heap only holds the chunk references
+* States are worked on through a single flyweight SudokuGameState (view()), loaded from a slot and stored back with store():
+*	SudokuSolutions solutions = new SudokuSolutions(arena.getView(), null);
+*	for (int i = 0; i < arena.size(); i++)
+*	{
+*		arena.view(i);
+*		solutions.solve();
+*		arena.store(i);
+*	}
+* An arena is not thread safe, use one per thread
+***********************************************************************/
+public class SudokuStateArena
+{
+
+	private static final int CHUNK_SLOTS = 1 << 16;		// Slots per chunk, chunk size is limited to 2GB
+
+	private final SudokuHouses houses;
+	private final int slotSize;
+	private final List<ByteBuffer> chunks = new ArrayList<ByteBuffer>();
+	private int slotCount = 0;
+
+	private final SudokuGameState view;				// Flyweight state, loaded from and stored to slots
+
+	/****************************************
+	 * SudokuStateArena constructor
+	 *
+	 * Build an empty arena for states of the specified grid size
+	 ***************************************/
+	SudokuStateArena()
+	{
+		this(SudokuHouses.STANDARD);
+	}
+	SudokuStateArena(SudokuHouses houses)
+	{
+		this.houses = houses;
+		slotSize = SudokuStateCodec.encodedSize(houses);
+		view = new SudokuGameState(houses);
+	}
+
+	/****************************************
+	 * size()
+	 *
+	 * Get the number of states in the arena
+	 ***************************************/
+	int size()
+	{
+		return slotCount;
+	}
+
+	/****************************************
+	 * getView()
+	 *
+	 * Get the flyweight state, to build SudokuSolutions or other workers on
+	 ***************************************/
+	SudokuGameState getView()
+	{
+		return view;
+	}
+
+	/****************************************
+	 * add()
+	 *
+	 * Add a copy of a state to a new slot, returning the slot number
+	 * With no state, add a copy of the view
+	 * With puzzle text (see SudokuGameState.loadValues()), add the puzzle's initial state,
+	 * using the view to build it. Returns -1 if the text is not a valid puzzle of this size
+	 ***************************************/
+	int add(SudokuGameState state)
+	{
+		checkSize(state);
+		if (slotCount == chunks.size() * CHUNK_SLOTS)
+			chunks.add(ByteBuffer.allocateDirect(CHUNK_SLOTS * slotSize));
+		store(slotCount++, state);
+		return slotCount-1;
+	}
+	int add()
+	{
+		return add(view);
+	}
+	int add(String puzzle)
+	{
+		view.clear();
+		if (!view.loadValues(puzzle))
+			return -1;
+		return add(view);
+	}
+
+	/****************************************
+	 * view()
+	 *
+	 * Load a slot into the flyweight state, and return it
+	 * The view's change logs are emptied, so they only hold the changes made since the slot was loaded
+	 ***************************************/
+	SudokuGameState view(int slot)
+	{
+		SudokuStateCodec.decode(slotBuffer(slot), view);
+		return view;
+	}
+
+	/****************************************
+	 * load()
+	 *
+	 * Copy a slot into a state of the same grid size
+	 ***************************************/
+	void load(int slot, SudokuGameState state)
+	{
+		checkSize(state);
+		SudokuStateCodec.decode(slotBuffer(slot), state);
+	}
+
+	/****************************************
+	 * store()
+	 *
+	 * Write the flyweight state, or another state of the same grid size, to a slot
+	 ***************************************/
+	void store(int slot)
+	{
+		store(slot, view);
+	}
+	void store(int slot, SudokuGameState state)
+	{
+		checkSize(state);
+		SudokuStateCodec.encode(state, slotBuffer(slot));
+	}
+
+	/****************************************
+	 * checkSize()
+	 *
+	 * Check a state is the arena's grid size
+	 ***************************************/
+	private void checkSize(SudokuGameState state)
+	{
+		if (state.getHouses() != houses)
+			throw new IllegalArgumentException("State is not a " + houses.size + "x" + houses.size + " grid");
+	}
+
+	/****************************************
+	 * slotBuffer()
+	 *
+	 * Get the chunk holding a slot, positioned at the start of the slot
+	 ***************************************/
+	private ByteBuffer slotBuffer(int slot)
+	{
+		ByteBuffer chunk;
+
+		if (slot < 0 || slot >= slotCount)
+			throw new IndexOutOfBoundsException("Slot " + slot + " of " + slotCount);
+		chunk = chunks.get(slot / CHUNK_SLOTS);
+		chunk.position((slot % CHUNK_SLOTS) * slotSize);
+		return chunk;
+	}
+}
@@ -0,0 +1,133 @@
+/*
+ * Sudoku Solver
+ * Author:    Jamie Speed
+ * Date:      2016-09-13
+ * Description:
+ * I wanted to teach myself Java, so I built this.
+ * This is a Sudoku Solving tool. The user can input a Sudoku puzzle and apply various solutions to it to see the results.
+ * It also supports solving the whole puzzle, using logical solutions or brute force recursion.
+ */
+package sudokusolver;
+
+/**
+ *
+ * @author Jamie Speed
+ */
+import java.nio.*;
+
+
+/***********************************************************************
+* class SudokuStateCodec
+*
+* Compact binary encoding of a SudokuGameState - values, possibilities and initial value flags
+* Each cell is packed into a fixed number of bits:
+*	possibility mask (size bits), value (enough bits for 0-size), initial value flag (1 bit)
+* so a 9x9 cell is 14 bits. Cells are packed back to back, low bits first, into 64 bit words
+* written to the buffer with putLong() - 18 words (144 bytes) for a 9x9 grid
+* The grid size is not stored, the state decoded into must be the size that was encoded
+* Encoding and decoding do not allocate, buffers are supplied by the caller
+***********************************************************************/
+public class SudokuStateCodec
+{
+
+	/****************************************
+	 * encodedSize()
+	 *
+	 * Get the number of bytes used to encode a state with these houses
+	 ***************************************/
+	static int encodedSize(SudokuHouses houses)
+	{
+		return (houses.cells * cellBits(houses) + 63) / 64 * 8;
+	}
+
+	/****************************************
+	 * cellBits()
+	 *
+	 * Get the number of bits used to encode each cell
+	 ***************************************/
+	private static int cellBits(SudokuHouses houses)
+	{
+		return houses.size + valueBits(houses) + 1;
+	}
+	private static int valueBits(SudokuHouses houses)
+	{
+		return 32 - Integer.numberOfLeadingZeros(houses.size);
+	}
+
+	/****************************************
+	 * encode()
+	 *
+	 * Write the state to the buffer at its current position, advancing the position by encodedSize()
+	 ***************************************/
+	static void encode(SudokuGameState state, ByteBuffer buffer)
+	{
+		SudokuHouses houses = state.getHouses();
+		int cellBits = cellBits(houses);
+		int valueShift = houses.size;
+		int initialShift = houses.size + valueBits(houses);
+		long word;
+		long packed = 0;		// Bits waiting to be written
+		int used = 0;			// Number of bits used in packed
+
+		for (int cell = 0; cell < houses.cells; cell++)
+		{
+			word = state.getPossibilityMask(cell) | ((long) state.getValue(cell) << valueShift);
+			if (state.isInitialValue(cell))
+				word |= 1L << initialShift;
+
+			packed |= word << used;
+			used += cellBits;
+			if (used >= 64)						// Word full, write it and keep the bits of this cell that did not fit
+			{
+				buffer.putLong(packed);
+				used -= 64;
+				packed = (used == 0) ? 0 : word >>> (cellBits - used);
+			}
+		}
+		if (used > 0)
+			buffer.putLong(packed);
+	}
+
+	/****************************************
+	 * decode()
+	 *
+	 * Replace the state with one read from the buffer at its current position, advancing the position by encodedSize()
+	 * Only values, possibilities and initial value flags are unpacked into the state - its house counts and positions,
+	 * bivalue cells and hash are worked out again when first needed (see SudokuGameState.endLoad())
+	 * The changes are not logged (the state's change logs are emptied), and the state's trail is not updated
+	 ***************************************/
+	static void decode(ByteBuffer buffer, SudokuGameState state)
+	{
+		SudokuHouses houses = state.getHouses();
+		int cellBits = cellBits(houses);
+		long cellMask = (1L << cellBits) - 1;
+		int valueShift = houses.size;
+		int valueMask = (1 << valueBits(houses)) - 1;
+		int initialShift = houses.size + valueBits(houses);
+		long word;
+		long packed = 0;		// Bits read but not yet used
+		int available = 0;		// Number of bits available in packed
+		long next;
+
+		for (int cell = 0; cell < houses.cells; cell++)
+		{
+			if (available >= cellBits)
+			{
+				word = packed & cellMask;
+				packed >>>= cellBits;
+				available -= cellBits;
+			}
+			else								// Cell runs into the next word
+			{
+				next = buffer.getLong();
+				word = (packed | (next << available)) & cellMask;
+				packed = next >>> (cellBits - available);
+				available += 64 - cellBits;
+			}
+
+			state.loadCellState(cell, (int) (word >>> valueShift) & valueMask, (int) word & houses.allPossibilities,
+								((word >>> initialShift) & 1) != 0);
+		}
+		state.endLoad();
+	}
+}
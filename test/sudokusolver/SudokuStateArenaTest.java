@@ -0,0 +1,70 @@
+/*
+ * Sudoku Solver
+ * Author:    Jamie Speed
+ * Date:      2016-09-13
+ * Description:
+ * I wanted to teach myself Java, so I built this.
+ * This is a Sudoku Solving tool. The user can input a Sudoku puzzle and apply various solutions to it to see the results.
+ * It also supports solving the whole puzzle, using logical solutions or brute force recursion.
+ */
+package sudokusolver;
+
+/**
+ *
+ * @author Jamie Speed
+ */
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+
+/***********************************************************************
+* class SudokuStateArenaTest
+*
+* Batch run over an arena, as in the SudokuStateArena class comment:
+* the flyweight view must not keep anything from the states loaded before it
+***********************************************************************/
+public class SudokuStateArenaTest
+{
+
+	private static final String[] PUZZLES = {
+			"004700000003080604600030000250190040300060009060073051000050007508010200000009500",
+			"100000569492056108056109240009640801064010000218035604040500016905061402621000005",
+			"003020600900305001001806400008102900700000008006708200002609500800203009005010300",
+			"200080300060070084030500209000105408000000000402706000301007040720040060004010003"
+		};																// All solved by the logical solutions
+
+	private static final int STATES = 20000;
+
+	/****************************************
+	 * batchKeepsViewBounded()
+	 *
+	 * view(i), solve(), store(i) over every slot: the change log holds no more than one state's changes,
+	 * and storing writes back to the slot, so the arena does not grow with the number of states run
+	 ***************************************/
+	@Test
+	public void batchKeepsViewBounded()
+	{
+		SudokuStateArena arena = new SudokuStateArena();
+		SudokuSolutions solutions = new SudokuSolutions(arena.getView(), null);
+		SudokuHouses houses = arena.getView().getHouses();
+		int maxChanges = houses.cells * (houses.size+1);		// Every possibility plus every value, once
+
+		for (int i = 0; i < STATES; i++)
+		{
+			assertEquals(i, arena.add(PUZZLES[i % PUZZLES.length]));
+		}
+
+		for (int i = 0; i < arena.size(); i++)
+		{
+			arena.view(i);
+			assertEquals("Change log not emptied by view(" + i + ")", 0, arena.getView().getChangeCount());
+			assertTrue("State " + i + " not solved", solutions.solve());
+			assertTrue("Change log of one state too long", arena.getView().getChangeCount() <= maxChanges);
+			arena.store(i);
+		}
+		assertEquals(STATES, arena.size());
+
+		arena.view(0);												// Stored states are the solved states
+		assertEquals(0, arena.getView().getRemainingValues());
+	}
+}